@@ -0,0 +1,128 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.Set;
+
+// Decides from its Footprint whether a job may build its model. A job whose
+// model does not fit the budget even alone is refused or, with DOWNGRADE,
+// replaced by the first lighter formulation that fits; when the campaign
+// already runs that formulation the job is refused, as the other one covers
+// it. When none fits, the job runs model free on the graph alone. A job that
+// fits alone waits until the running ones leave it room.
+public class AdmissionControl {
+
+	enum Policy {
+		// let every job try, as before
+		OFF,
+		REFUSE,
+		DOWNGRADE
+	}
+
+	// what to do with a job
+	static class Decision {
+		// the job to run, null when refused
+		final Experiment job;
+		final Footprint footprint;
+		final String reason;
+
+		Decision(Experiment job, Footprint footprint, String reason) {
+			this.job = job;
+			this.footprint = footprint;
+			this.reason = reason;
+		}
+	}
+
+	final Policy policy;
+	// heap plus CPLEX memory of the jobs running at the same time
+	final long memoryBudget;
+	final long heapBudget;
+	final Set<Formulation> scheduled;
+
+	private long reservedMemory;
+	private long reservedHeap;
+
+	AdmissionControl(Policy policy, long memoryBudget, Set<Formulation> scheduled) {
+		this.policy = policy;
+		this.memoryBudget = memoryBudget;
+		this.heapBudget = Runtime.getRuntime().maxMemory();
+		this.scheduled = scheduled;
+	}
+
+	// the physical memory of the machine, unbounded when the JVM cannot tell
+	static long physicalMemory() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean)
+			return ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize();
+		return Long.MAX_VALUE;
+	}
+
+	private boolean fits(Footprint footprint) {
+		return footprint.fitsSparseModel() && footprint.bytes() <= memoryBudget && footprint.heapBytes <= heapBudget;
+	}
+
+	Decision decide(Experiment job) {
+		Footprint footprint = Footprint.estimate(job);
+		if (policy == Policy.OFF || fits(footprint))
+			return new Decision(job, footprint, "admitted");
+
+		String over = footprint.fitsSparseModel()
+				? "predicted " + Footprint.megabytes(footprint.bytes()) + " over the budget of "
+						+ Footprint.megabytes(memoryBudget)
+				: footprint.nonZeros + " nonzeros do not fit a sparse model";
+		String refused = "refused, " + over;
+		if (policy == Policy.REFUSE)
+			return new Decision(null, footprint, refused);
+
+		// a rooted job first gives up workers, each holds a copy of the model
+		if (job.decomposed())
+			for (int workers = job.workers - 1; workers >= 1; workers--)
+				if (fits(Footprint.estimate(job.formulation, job.numberOfNodes, job.numberOfEdges, job.strengthening)
+						.copies(workers))) {
+					Experiment fewer = job.with(job.formulation, job.strengthening);
+					fewer.workers = workers;
+					return new Decision(fewer, Footprint.estimate(fewer), "rooted on " + workers + " of "
+							+ job.workers + " workers, " + over);
+				}
+
+		for (Formulation lighter = job.formulation.lighter(); lighter != null; lighter = lighter.lighter()) {
+			Set<Strengthening> strengthening = Strengthening.applicable(job.strengthening, lighter);
+			Footprint candidate = Footprint.estimate(lighter, job.numberOfNodes, job.numberOfEdges, strengthening);
+			if (!fits(candidate))
+				continue;
+			if (scheduled.contains(lighter))
+				return new Decision(null, footprint, refused + ", " + lighter + " is run anyway");
+			Experiment downgraded = job.with(lighter, strengthening);
+			downgraded.workers = 1;
+			return new Decision(downgraded, Footprint.estimate(downgraded),
+					"downgraded from " + job.formulation + ", " + over);
+		}
+		// the Lagrangian relaxation and the metaheuristic still give a tree and a bound
+		Experiment modelFree = job.with(job.formulation, job.strengthening);
+		modelFree.modelFree = true;
+		return new Decision(modelFree, Footprint.graph(job.numberOfNodes, job.numberOfEdges), "model free, " + over);
+	}
+
+	// waits until the running jobs leave room for the footprint, returns
+	// whether it had to wait; a job that fits alone always gets in eventually
+	synchronized boolean acquire(Footprint footprint) throws InterruptedException {
+		if (policy == Policy.OFF)
+			return false;
+		boolean queued = false;
+		while ((reservedMemory > 0 || reservedHeap > 0) && (reservedMemory + footprint.bytes() > memoryBudget
+				|| reservedHeap + footprint.heapBytes > heapBudget)) {
+			queued = true;
+			wait();
+		}
+		reservedMemory += footprint.bytes();
+		reservedHeap += footprint.heapBytes;
+		return queued;
+	}
+
+	synchronized void release(Footprint footprint) {
+		if (policy == Policy.OFF)
+			return;
+		reservedMemory -= footprint.bytes();
+		reservedHeap -= footprint.heapBytes;
+		notifyAll();
+	}
+
+}
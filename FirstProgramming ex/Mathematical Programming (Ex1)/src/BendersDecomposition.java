@@ -0,0 +1,123 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ilog.concert.IloException;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+
+// Benders decomposition of MCF: the master keeps x, y and the constraints
+// (26) - (30), the flow block is split into one subproblem per commodity.
+// For fixed (x, y) the subproblem of t asks for y_t units from 0 to t within
+// the capacities x; it is solved by max-flow, and when infeasible the dual ray
+// is the minimum cut, giving the feasibility cut x(delta-(W)) >= y_t. The
+// flows have no cost, so there are no optimality cuts.
+//
+// The subproblems of a master solution are solved in parallel on a pool of
+// workers, each with its own max-flow arrays.
+public class BendersDecomposition {
+
+	// commodities handed to a worker at a time
+	static final int COMMODITIES_PER_TASK = 32;
+
+	final Graph graph;
+	final ExecutorService workers;
+	private final ThreadLocal<ConnectivityCuts> subproblems;
+
+	BendersDecomposition(Graph graph, int numberOfWorkers) {
+		this.graph = graph;
+		this.workers = Executors.newFixedThreadPool(numberOfWorkers);
+		this.subproblems = ThreadLocal.withInitial(() -> new ConnectivityCuts(graph));
+	}
+
+	static BendersDecomposition attach(CplexBackend backend, Graph graph, SparseModel model, int numberOfWorkers)
+			throws IloException {
+		BendersDecomposition benders = new BendersDecomposition(graph, numberOfWorkers);
+		IloNumVar[] x = backend.columns(model.xStart, graph.numberOfArcs);
+		IloNumVar[] y = backend.columns(model.yStart, graph.numberOfNodes);
+		backend.cplex.use(benders.new FeasibilityCuts(backend.cplex, x, y));
+		backend.cplex.use(benders.new FractionalCuts(backend.cplex, x, y));
+		return benders;
+	}
+
+	// the feasibility cuts of all the infeasible subproblems
+	List<int[]> cuts(double[] x, double[] y, double tolerance) throws IloException {
+		List<Future<List<int[]>>> tasks = new ArrayList<>();
+		for (int first = 1; first < graph.numberOfNodes; first += COMMODITIES_PER_TASK) {
+			int from = first;
+			int to = Math.min(first + COMMODITIES_PER_TASK, graph.numberOfNodes);
+			tasks.add(workers.submit(() -> {
+				ConnectivityCuts subproblem = subproblems.get();
+				List<int[]> cuts = new ArrayList<>();
+				for (int commodity = from; commodity < to; commodity++) {
+					if (y[commodity] <= tolerance)
+						continue;
+					int[] cut = subproblem.separate(x, commodity, y[commodity], tolerance);
+					if (cut != null)
+						cuts.add(cut);
+				}
+				return cuts;
+			}));
+		}
+
+		List<int[]> cuts = new ArrayList<>();
+		try {
+			for (Future<List<int[]>> task : tasks)
+				cuts.addAll(task.get());
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IloException("Benders subproblem failed: " + e);
+		}
+		return cuts;
+	}
+
+	void shutdown() {
+		workers.shutdownNow();
+	}
+
+	// integer master solutions: every violated subproblem gives a lazy cut
+	private class FeasibilityCuts extends IloCplex.LazyConstraintCallback {
+
+		private final IloCplex cplex;
+		private final IloNumVar[] x;
+		private final IloNumVar[] y;
+
+		FeasibilityCuts(IloCplex cplex, IloNumVar[] x, IloNumVar[] y) {
+			this.cplex = cplex;
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		protected void main() throws IloException {
+			for (int[] cut : cuts(getValues(x), getValues(y), BranchAndCut.LAZY_TOLERANCE))
+				add(cplex.ge(BranchAndCut.cutExpression(cplex, cut, x, y), 0));
+		}
+
+	}
+
+	// fractional master solutions: the same cuts, only when clearly violated
+	private class FractionalCuts extends IloCplex.UserCutCallback {
+
+		private final IloCplex cplex;
+		private final IloNumVar[] x;
+		private final IloNumVar[] y;
+
+		FractionalCuts(IloCplex cplex, IloNumVar[] x, IloNumVar[] y) {
+			this.cplex = cplex;
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		protected void main() throws IloException {
+			List<int[]> cuts = cuts(getValues(x), getValues(y), BranchAndCut.USER_CUT_TOLERANCE);
+			for (int[] cut : cuts.subList(0, Math.min(cuts.size(), BranchAndCut.USER_CUTS_PER_CALL)))
+				add(cplex.ge(BranchAndCut.cutExpression(cplex, cut, x, y), 0), IloCplex.CutManagement.UseCutPurge);
+		}
+
+	}
+
+}
@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Compiled instances (.kct): what InstanceLoader parses from a .dat file,
+// stored so that loading is a memory map and a few bulk copies.
+//
+// Layout, little endian:
+// - header: magic "KCT1", flags, n, m, number of arcs, bytes of the endpoint
+//   section, CRC32 of everything after the header;
+// - endpoints: the edges sorted by (smaller, larger endpoint), as varints of
+//   the gap to the previous smaller endpoint and of the larger endpoint minus
+//   the smaller one (minus the previous larger one when the smaller repeats),
+//   padded to 4 bytes;
+// - weights: one int per edge;
+// - with FLAG_CSR: the Graph arrays tail, head, reverse, outStart, outArcs,
+//   inStart, inArcs, loaded as they are instead of decoding the endpoints.
+//
+// Edges are numbered in sorted order, which is the order of the data files
+// g01 - g06 but not of the larger ones; the root edges come first either way,
+// and a compiled instance has its own entries in the SolutionCache.
+public class BinaryInstance {
+
+	static final int MAGIC = 'K' | 'C' << 8 | 'T' << 16 | '1' << 24;
+	static final int FLAG_CSR = 1;
+	static final int HEADER_BYTES = 28;
+
+	// .dat to .kct for every file on the command line, "csr=false" leaves out the CSR section
+	public static void main(String[] args) throws IOException {
+		boolean csr = true;
+		for (String arg : args) {
+			if (arg.startsWith("csr=")) {
+				csr = Boolean.parseBoolean(arg.substring(4));
+				continue;
+			}
+			String target = (arg.endsWith(".dat") ? arg.substring(0, arg.length() - 4) : arg) + ".kct";
+			long start = System.nanoTime();
+			write(InstanceLoader.load(arg), target, csr);
+			System.out.println(arg + " -> " + target + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+		}
+	}
+
+	static boolean isBinary(String file) {
+		return file.endsWith(".kct");
+	}
+
+	static void write(Graph graph, String file, boolean csr) throws IOException {
+		int n = graph.numberOfNodes;
+		int m = graph.numberOfEdges;
+
+		// bucket the edges by their smaller endpoint, then sort every bucket by the larger one
+		int[] smaller = new int[m];
+		int[] larger = new int[m];
+		int[] start = new int[n + 1];
+		for (int edge = 0; edge < m; edge++) {
+			smaller[edge] = Math.min(graph.tail[edge], graph.head[edge]);
+			larger[edge] = Math.max(graph.tail[edge], graph.head[edge]);
+			start[smaller[edge] + 1]++;
+		}
+		for (int node = 0; node < n; node++)
+			start[node + 1] += start[node];
+		long[] bucket = new long[m];
+		int[] next = Arrays.copyOf(start, n);
+		for (int edge = 0; edge < m; edge++)
+			bucket[next[smaller[edge]]++] = (long) larger[edge] << 32 | edge;
+		for (int node = 0; node < n; node++)
+			Arrays.sort(bucket, start[node], start[node + 1]);
+
+		int[] endpoint_1 = new int[m];
+		int[] endpoint_2 = new int[m];
+		int[] weight = new int[m];
+		for (int node = 0, position = 0; node < n; node++)
+			for (; position < start[node + 1]; position++) {
+				int edge = (int) bucket[position];
+				endpoint_1[position] = node;
+				endpoint_2[position] = (int) (bucket[position] >>> 32);
+				weight[position] = graph.weight[edge];
+			}
+		Graph sorted = new Graph(n, m, endpoint_1, endpoint_2, weight);
+
+		int endpointBytes = 0;
+		for (int edge = 0, previous_1 = 0, previous_2 = 0; edge < m; edge++) {
+			int base = endpoint_1[edge] == previous_1 ? previous_2 : endpoint_1[edge];
+			endpointBytes += varintBytes(endpoint_1[edge] - previous_1) + varintBytes(endpoint_2[edge] - base);
+			previous_1 = endpoint_1[edge];
+			previous_2 = endpoint_2[edge];
+		}
+		int padding = -endpointBytes & 3;
+		int arcs = sorted.numberOfArcs;
+		long size = HEADER_BYTES + endpointBytes + padding + 4L * m + (csr ? 4L * (5L * arcs + 2L * (n + 1)) : 0);
+		if (size > Integer.MAX_VALUE)
+			throw new IOException(file + ": " + size + " bytes is too large to be mapped at once");
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			raf.setLength(size);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			buffer.position(HEADER_BYTES);
+			for (int edge = 0, previous_1 = 0, previous_2 = 0; edge < m; edge++) {
+				int base = endpoint_1[edge] == previous_1 ? previous_2 : endpoint_1[edge];
+				putVarint(buffer, endpoint_1[edge] - previous_1);
+				putVarint(buffer, endpoint_2[edge] - base);
+				previous_1 = endpoint_1[edge];
+				previous_2 = endpoint_2[edge];
+			}
+			for (int i = 0; i < padding; i++)
+				buffer.put((byte) 0);
+
+			IntBuffer ints = buffer.asIntBuffer();
+			ints.put(weight);
+			if (csr)
+				for (int[] array : new int[][] { sorted.tail, sorted.head, sorted.reverse,
+						sorted.outStart, sorted.outArcs, sorted.inStart, sorted.inArcs })
+					ints.put(array);
+
+			CRC32 crc = new CRC32();
+			crc.update(buffer.duplicate().position(HEADER_BYTES).limit((int) size));
+			buffer.position(0);
+			buffer.putInt(MAGIC).putInt(csr ? FLAG_CSR : 0).putInt(n).putInt(m).putInt(arcs).putInt(endpointBytes)
+					.putInt((int) crc.getValue());
+			buffer.force();
+		}
+	}
+
+	static Graph load(String file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException(file + ": " + size + " bytes is too large to be mapped at once");
+			if (size < HEADER_BYTES)
+				throw new IOException(file + ": truncated header");
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (buffer.getInt() != MAGIC)
+				throw new IOException(file + ": not a compiled instance");
+			boolean csr = (buffer.getInt() & FLAG_CSR) != 0;
+			int n = buffer.getInt();
+			int m = buffer.getInt();
+			int arcs = buffer.getInt();
+			int endpointBytes = buffer.getInt();
+			int checksum = buffer.getInt();
+			long expected = HEADER_BYTES + endpointBytes + (-endpointBytes & 3) + 4L * m
+					+ (csr ? 4L * (5L * arcs + 2L * (n + 1)) : 0);
+			if (n < 1 || m < 0 || arcs < m || endpointBytes < 0 || expected != size)
+				throw new IOException(file + ": sizes in the header do not match the file");
+
+			CRC32 crc = new CRC32();
+			crc.update(buffer.duplicate().position(HEADER_BYTES));
+			if ((int) crc.getValue() != checksum)
+				throw new IOException(file + ": checksum mismatch");
+
+			IntBuffer ints = buffer.position(HEADER_BYTES + endpointBytes + (-endpointBytes & 3)).asIntBuffer();
+			int[] edgeWeight = new int[m];
+			ints.get(edgeWeight);
+
+			if (!csr) {
+				int[] endpoint_1 = new int[m];
+				int[] endpoint_2 = new int[m];
+				buffer.position(HEADER_BYTES);
+				for (int edge = 0, previous_1 = 0, previous_2 = 0; edge < m; edge++) {
+					endpoint_1[edge] = previous_1 + getVarint(buffer);
+					int base = endpoint_1[edge] == previous_1 ? previous_2 : endpoint_1[edge];
+					endpoint_2[edge] = base + getVarint(buffer);
+					if (endpoint_2[edge] >= n)
+						throw new IOException(file + ": endpoint of edge " + edge + " out of range");
+					previous_1 = endpoint_1[edge];
+					previous_2 = endpoint_2[edge];
+				}
+				return new Graph(n, m, endpoint_1, endpoint_2, edgeWeight);
+			}
+
+			int[] tail = new int[arcs];
+			int[] head = new int[arcs];
+			int[] reverse = new int[arcs];
+			int[] outStart = new int[n + 1];
+			int[] outArcs = new int[arcs];
+			int[] inStart = new int[n + 1];
+			int[] inArcs = new int[arcs];
+			ints.get(tail).get(head).get(reverse).get(outStart).get(outArcs).get(inStart).get(inArcs);
+
+			int[] weight = Arrays.copyOf(edgeWeight, arcs);
+			for (int arc = m; arc < arcs; arc++)
+				weight[arc] = edgeWeight[reverse[arc]];
+			return new Graph(n, m, tail, head, weight, reverse, outStart, outArcs, inStart, inArcs);
+		}
+	}
+
+	// the number of nodes and edges in the header of the file
+	static int[] readSizes(String file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			byte[] header = new byte[HEADER_BYTES];
+			raf.readFully(header);
+			ByteBuffer buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt(0) != MAGIC)
+				throw new IOException(file + ": not a compiled instance");
+			return new int[] { buffer.getInt(8), buffer.getInt(12) };
+		}
+	}
+
+	static int varintBytes(int value) {
+		int bytes = 1;
+		while ((value >>>= 7) != 0)
+			bytes++;
+		return bytes;
+	}
+
+	static void putVarint(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) (value & 0x7F | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	static int getVarint(ByteBuffer buffer) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new IOException("malformed varint");
+	}
+
+}
@@ -0,0 +1,89 @@
+import java.util.List;
+
+import ilog.concert.IloException;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+
+// Callbacks that make the BC formulation exact: the directed connectivity
+// cuts of ConnectivityCuts are added as lazy constraints on every integer
+// solution and as user cuts on the fractional ones, which gives the bound of
+// MCF on a model the size of MTZ.
+public class BranchAndCut {
+
+	// integer solutions must satisfy every cut
+	static final double LAZY_TOLERANCE = 1e-6;
+
+	// fractional points are only cut when clearly violated, and with few cuts per call
+	static final double USER_CUT_TOLERANCE = 0.1;
+	static final int USER_CUTS_PER_CALL = 20;
+
+	static void attach(CplexBackend backend, Graph graph, SparseModel model) throws IloException {
+		IloNumVar[] x = backend.columns(model.xStart, graph.numberOfArcs);
+		IloNumVar[] y = backend.columns(model.yStart, graph.numberOfNodes);
+
+		// the callbacks run in the CPLEX threads, every one needs its own max-flow arrays
+		ThreadLocal<ConnectivityCuts> separators = ThreadLocal.withInitial(() -> new ConnectivityCuts(graph));
+
+		backend.cplex.use(new LazyCuts(backend.cplex, x, y, separators));
+		backend.cplex.use(new UserCuts(backend.cplex, x, y, separators));
+	}
+
+	static IloLinearNumExpr cutExpression(IloCplex cplex, int[] cut, IloNumVar[] x, IloNumVar[] y)
+			throws IloException {
+		IloLinearNumExpr expr = cplex.linearNumExpr();
+		for (int i = 1; i < cut.length; i++)
+			expr.addTerm(1, x[cut[i]]);
+		expr.addTerm(-1, y[cut[0]]);
+		return expr;
+	}
+
+	private static class LazyCuts extends IloCplex.LazyConstraintCallback {
+
+		private final IloCplex cplex;
+		private final IloNumVar[] x;
+		private final IloNumVar[] y;
+		private final ThreadLocal<ConnectivityCuts> separators;
+
+		LazyCuts(IloCplex cplex, IloNumVar[] x, IloNumVar[] y, ThreadLocal<ConnectivityCuts> separators) {
+			this.cplex = cplex;
+			this.x = x;
+			this.y = y;
+			this.separators = separators;
+		}
+
+		@Override
+		protected void main() throws IloException {
+			List<int[]> cuts = separators.get().separate(getValues(x), getValues(y), LAZY_TOLERANCE,
+					Integer.MAX_VALUE);
+			for (int[] cut : cuts)
+				add(cplex.ge(cutExpression(cplex, cut, x, y), 0));
+		}
+
+	}
+
+	private static class UserCuts extends IloCplex.UserCutCallback {
+
+		private final IloCplex cplex;
+		private final IloNumVar[] x;
+		private final IloNumVar[] y;
+		private final ThreadLocal<ConnectivityCuts> separators;
+
+		UserCuts(IloCplex cplex, IloNumVar[] x, IloNumVar[] y, ThreadLocal<ConnectivityCuts> separators) {
+			this.cplex = cplex;
+			this.x = x;
+			this.y = y;
+			this.separators = separators;
+		}
+
+		@Override
+		protected void main() throws IloException {
+			List<int[]> cuts = separators.get().separate(getValues(x), getValues(y), USER_CUT_TOLERANCE,
+					USER_CUTS_PER_CALL);
+			for (int[] cut : cuts)
+				add(cplex.ge(cutExpression(cplex, cut, x, y), 0), IloCplex.CutManagement.UseCutPurge);
+		}
+
+	}
+
+}
@@ -0,0 +1,94 @@
+import java.util.Arrays;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+
+// Solves MCF generating the commodities on demand: the model starts with the
+// flows of a few commodities only, and after every solve the flows of the
+// selected vertices that the x arcs do not connect to the root are added,
+// until the solution is a tree. Memory grows with the commodities needed
+// instead of with the number of nodes.
+public class CommodityGeneration {
+
+	final CplexBackend backend;
+	final Graph graph;
+	final SparseModel model;
+
+	int rounds;
+
+	CommodityGeneration(CplexBackend backend, Graph graph, SparseModel model) {
+		this.backend = backend;
+		this.graph = graph;
+		this.model = model;
+	}
+
+	// true when the last solve found a connected solution, so the optimum of the
+	// full MCF if CPLEX proved optimality
+	boolean solve(double timeLimit, KTree start) throws IloException {
+		IloCplex cplex = backend.cplex;
+		long deadline = System.nanoTime() + (long) (timeLimit * 1e9);
+
+		while (true) {
+			double left = (deadline - System.nanoTime()) / 1e9;
+			if (left <= 0)
+				return false;
+			cplex.setParam(IloCplex.Param.TimeLimit, left);
+
+			rounds++;
+			if (!cplex.solve())
+				return false;
+
+			int[] disconnected = disconnected(cplex.getValues(backend.columns(model.xStart, graph.numberOfArcs)),
+					cplex.getValues(backend.columns(model.yStart, graph.numberOfNodes)));
+			if (disconnected.length == 0)
+				return true;
+
+			int firstColumn = model.numberOfColumns;
+			int firstRow = model.numberOfRows;
+			for (int commodity : disconnected)
+				ModelGenerator.addCommodity(graph, model, commodity);
+			backend.addColumns(model, firstColumn);
+			backend.addRows(model, firstRow);
+
+			// the start loaded before the first round has no value for the new flows
+			if (start != null)
+				MipStart.add(backend, graph, model, start);
+		}
+	}
+
+	// the selected vertices not reached from the root along the selected arcs
+	int[] disconnected(double[] x, double[] y) {
+		int n = graph.numberOfNodes;
+		boolean[] reached = new boolean[n];
+		int[] queue = new int[n];
+		int head = 0, tail = 0;
+		queue[tail++] = 0;
+		reached[0] = true;
+		while (head < tail) {
+			int node = queue[head++];
+			for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+				int arc = graph.outArcs[pos];
+				if (x[arc] > 0.5 && !reached[graph.head[arc]]) {
+					reached[graph.head[arc]] = true;
+					queue[tail++] = graph.head[arc];
+				}
+			}
+		}
+
+		boolean[] generated = new boolean[n];
+		for (int commodity : model.commodities)
+			generated[commodity] = true;
+
+		int count = 0;
+		int[] result = new int[n];
+		for (int node = 1; node < n; node++)
+			if (y[node] > 0.5 && !reached[node] && !generated[node])
+				result[count++] = node;
+		return Arrays.copyOf(result, count);
+	}
+
+	int commodities() {
+		return model.commodities.length;
+	}
+
+}
@@ -0,0 +1,58 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Separation of the directed connectivity cuts
+//
+//   sum of x over the arcs entering W >= y_t    for every W not containing 0, t in W
+//
+// by a minimum 0-t cut on the support graph of (x, y) for every selected t.
+// Not thread safe, every thread needs its own instance.
+public class ConnectivityCuts {
+
+	final Graph graph;
+	private final MaxFlow maxFlow;
+	private final boolean[] covered;
+	private final int[] buffer;
+
+	ConnectivityCuts(Graph graph) {
+		this.graph = graph;
+		this.maxFlow = new MaxFlow(graph);
+		this.covered = new boolean[graph.numberOfNodes];
+		this.buffer = new int[graph.numberOfArcs + 1];
+	}
+
+	// violated cuts as {t, arc, arc, ...}, at most maxCuts of them. A node on the
+	// sink side of a cut already found is not separated again in the same round.
+	List<int[]> separate(double[] x, double[] y, double tolerance, int maxCuts) {
+		List<int[]> cuts = new ArrayList<>();
+		Arrays.fill(covered, false);
+
+		for (int node = 1; node < graph.numberOfNodes && cuts.size() < maxCuts; node++) {
+			if (covered[node] || y[node] <= tolerance)
+				continue;
+			int[] cut = separate(x, node, y[node], tolerance);
+			if (cut != null)
+				cuts.add(cut);
+		}
+		return cuts;
+	}
+
+	// the cut of node t if violated by more than tolerance, null otherwise
+	int[] separate(double[] x, int node, double yValue, double tolerance) {
+		double flow = maxFlow.maxFlow(x, 0, node, yValue);
+		if (flow >= yValue - tolerance)
+			return null;
+
+		int size = 1;
+		buffer[0] = node;
+		for (int arc = 0; arc < graph.numberOfArcs; arc++)
+			if (maxFlow.inSourceSide(graph.tail[arc]) && !maxFlow.inSourceSide(graph.head[arc]))
+				buffer[size++] = arc;
+		for (int other = 0; other < graph.numberOfNodes; other++)
+			if (!maxFlow.inSourceSide(other))
+				covered[other] = true;
+		return Arrays.copyOf(buffer, size);
+	}
+
+}
@@ -0,0 +1,156 @@
+import ilog.concert.IloException;
+import ilog.concert.IloLPMatrix;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloNumVarType;
+import ilog.concert.IloObjective;
+import ilog.cplex.IloCplex;
+
+// Hands a SparseModel to CPLEX in bulk: one array of columns and the rows
+// added to an IloLPMatrix in blocks, instead of one Concert expression per row.
+public class CplexBackend implements ModelBackend {
+
+	// rows passed to IloLPMatrix.addRows at a time, bounds the temporary copies
+	private static final int ROW_BLOCK = 1 << 16;
+
+	final IloCplex cplex;
+
+	IloLPMatrix matrix;
+	IloNumVar[] columns;
+	IloObjective objective;
+
+	CplexBackend(IloCplex cplex) {
+		this.cplex = cplex;
+	}
+
+	@Override
+	public void load(SparseModel model) throws IloException {
+		int numberOfColumns = model.numberOfColumns;
+		double[] lb = new double[numberOfColumns];
+		double[] ub = new double[numberOfColumns];
+		IloNumVarType[] types = new IloNumVarType[numberOfColumns];
+		for (int column = 0; column < numberOfColumns; column++) {
+			lb[column] = model.lowerBound[column];
+			ub[column] = model.upperBound[column];
+			types[column] = toType(model.type[column]);
+		}
+
+		columns = cplex.numVarArray(numberOfColumns, lb, ub, types);
+		matrix = cplex.addLPMatrix();
+		matrix.addCols(columns);
+		addRows(model, 0);
+
+		double[] objectiveCoefficients = new double[numberOfColumns];
+		System.arraycopy(model.objective, 0, objectiveCoefficients, 0, numberOfColumns);
+		objective = cplex.addMinimize(cplex.scalProd(columns, objectiveCoefficients));
+	}
+
+	// adds the columns appended to the model since the load, from firstColumn on
+	void addColumns(SparseModel model, int firstColumn) throws IloException {
+		int count = model.numberOfColumns - firstColumn;
+		double[] lb = new double[count];
+		double[] ub = new double[count];
+		IloNumVarType[] types = new IloNumVarType[count];
+		for (int i = 0; i < count; i++) {
+			lb[i] = model.lowerBound[firstColumn + i];
+			ub[i] = model.upperBound[firstColumn + i];
+			types[i] = toType(model.type[firstColumn + i]);
+		}
+
+		IloNumVar[] added = cplex.numVarArray(count, lb, ub, types);
+		matrix.addCols(added);
+		IloNumVar[] all = new IloNumVar[firstColumn + count];
+		System.arraycopy(columns, 0, all, 0, firstColumn);
+		System.arraycopy(added, 0, all, firstColumn, count);
+		columns = all;
+	}
+
+	// adds the rows of the model starting from firstRow
+	void addRows(SparseModel model, int firstRow) throws IloException {
+		for (int from = firstRow; from < model.numberOfRows; from += ROW_BLOCK) {
+			int count = Math.min(ROW_BLOCK, model.numberOfRows - from);
+			double[] lb = new double[count];
+			double[] ub = new double[count];
+			int[][] ind = new int[count][];
+			double[][] val = new double[count][];
+
+			for (int i = 0; i < count; i++) {
+				int row = from + i;
+				int start = model.rowStart[row];
+				int length = model.rowLength(row);
+				ind[i] = new int[length];
+				val[i] = new double[length];
+				System.arraycopy(model.rowIndex, start, ind[i], 0, length);
+				System.arraycopy(model.value, start, val[i], 0, length);
+
+				lb[i] = rowLower(model, row);
+				ub[i] = rowUpper(model, row);
+			}
+			matrix.addRows(lb, ub, ind, val);
+		}
+	}
+
+	// turns the loaded model into model in place, setting only the bounds, right
+	// hand sides and coefficients that differ; the two must have the same columns,
+	// rows and nonzero pattern. Returns the number of changes.
+	int update(SparseModel loaded, SparseModel model) throws IloException {
+		if (loaded.numberOfColumns != model.numberOfColumns || loaded.numberOfRows != model.numberOfRows
+				|| loaded.numberOfNonZeros != model.numberOfNonZeros)
+			throw new IllegalArgumentException("the models differ in size: " + loaded + " and " + model);
+
+		int changes = 0;
+		for (int column = 0; column < model.numberOfColumns; column++) {
+			if (loaded.type[column] != model.type[column] || loaded.objective[column] != model.objective[column])
+				throw new IllegalArgumentException("column " + column + " differs in type or objective");
+			if (loaded.lowerBound[column] != model.lowerBound[column]) {
+				columns[column].setLB(model.lowerBound[column]);
+				changes++;
+			}
+			if (loaded.upperBound[column] != model.upperBound[column]) {
+				columns[column].setUB(model.upperBound[column]);
+				changes++;
+			}
+		}
+
+		for (int row = 0; row < model.numberOfRows; row++) {
+			if (loaded.sense[row] != model.sense[row] || loaded.rowStart[row + 1] != model.rowStart[row + 1])
+				throw new IllegalArgumentException("row " + row + " differs in sense or length");
+			if (loaded.rhs[row] != model.rhs[row]) {
+				matrix.getRange(row).setBounds(rowLower(model, row), rowUpper(model, row));
+				changes++;
+			}
+			for (int pos = model.rowStart[row]; pos < model.rowStart[row + 1]; pos++) {
+				if (loaded.rowIndex[pos] != model.rowIndex[pos])
+					throw new IllegalArgumentException("row " + row + " differs in its columns");
+				if (loaded.value[pos] != model.value[pos]) {
+					matrix.setNZ(row, model.rowIndex[pos], model.value[pos]);
+					changes++;
+				}
+			}
+		}
+		return changes;
+	}
+
+	private static double rowLower(SparseModel model, int row) {
+		return model.sense[row] == SparseModel.LESS_EQUAL ? -Double.MAX_VALUE : model.rhs[row];
+	}
+
+	private static double rowUpper(SparseModel model, int row) {
+		return model.sense[row] == SparseModel.GREATER_EQUAL ? Double.MAX_VALUE : model.rhs[row];
+	}
+
+	// the columns [start, start + count) as CPLEX variables
+	IloNumVar[] columns(int start, int count) {
+		IloNumVar[] slice = new IloNumVar[count];
+		System.arraycopy(columns, start, slice, 0, count);
+		return slice;
+	}
+
+	static IloNumVarType toType(char type) {
+		if (type == SparseModel.BINARY)
+			return IloNumVarType.Bool;
+		if (type == SparseModel.INTEGER)
+			return IloNumVarType.Int;
+		return IloNumVarType.Float;
+	}
+
+}
@@ -0,0 +1,294 @@
+import java.util.Set;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+
+// One run of the campaign: a formulation, possibly strengthened, solved on an
+// instance for a given k.
+public class Experiment {
+
+	// the share of the time the Lagrangian relaxation takes before the model
+	// is built
+	static final double LAGRANGIAN_SHARE = 0.1;
+	// the share of the time the start heuristic may take on a large graph
+	static final double HEURISTIC_SHARE = 0.05;
+
+	final String instance;
+	final int numberOfNodes;
+	final int numberOfEdges;
+	final int kDivisor;
+	final int k;
+	final Formulation formulation;
+	final Set<Strengthening> strengthening;
+	final double expectedCost;
+	// solved by a RootedDecomposition instead of a single model
+	boolean rooted;
+	// the subproblems of a rooted job solved at the same time, each worker on
+	// its own copy of the model
+	int workers = 1;
+	// solved without a model, by the Lagrangian relaxation and the
+	// metaheuristic, when no formulation fits the memory
+	boolean modelFree;
+	// the workers of the Benders subproblems and of the metaheuristic, beside
+	// the CPLEX threads
+	int cores = Runtime.getRuntime().availableProcessors();
+
+	Experiment(String instance, int numberOfNodes, int numberOfEdges, int kDivisor, Formulation formulation,
+			Set<Strengthening> strengthening) {
+		this.instance = instance;
+		this.numberOfNodes = numberOfNodes;
+		this.numberOfEdges = numberOfEdges;
+		this.kDivisor = kDivisor;
+		this.k = numberOfNodes / kDivisor;
+		this.formulation = formulation;
+		this.strengthening = strengthening;
+		this.expectedCost = formulation.expectedSize(numberOfNodes, numberOfEdges);
+	}
+
+	// the same job with another formulation, its settings kept
+	Experiment with(Formulation other, Set<Strengthening> otherStrengthening) {
+		Experiment job = new Experiment(instance, numberOfNodes, numberOfEdges, kDivisor, other, otherStrengthening);
+		job.rooted = rooted;
+		job.workers = workers;
+		job.cores = cores;
+		return job;
+	}
+
+	// builds and solves the model, returns the line to report; the phases, the
+	// model sizes and the outcome are recorded in metrics. A resumed run passes
+	// the best tree of the previous ones, used if lighter than the heuristic.
+	// When progress is not null it samples the CPLEX solve; when solutions is
+	// not null it gets the heuristic trees and the CPLEX incumbents.
+	String run(Graph graph, int threads, double timeLimit, RunMetrics metrics, ProgressRecorder progress, KTree resume,
+			SolutionLog solutions) throws IloException {
+		IloCplex model = new IloCplex();
+		BendersDecomposition benders = null;
+		try {
+			model.setOut(null);
+			model.setParam(IloCplex.Param.TimeLimit, timeLimit);
+			model.setParam(IloCplex.Param.Threads, threads);
+//			model.setParam(IloCplex.BooleanParam.MemoryEmphasis, true); // reduce storage where possible
+
+			// the heuristic tree bounds the reduction and then starts the search
+			long started = System.nanoTime();
+			long time = started;
+			KTree heuristic = new KTreeHeuristic(graph, k).solve(timeLimit * HEURISTIC_SHARE);
+			log(solutions, SolutionLog.Source.HEURISTIC, heuristic, null);
+			if (resume != null && (heuristic == null || resume.weight < heuristic.weight))
+				heuristic = resume;
+			time = metrics.phase("heuristic", time);
+			Reduction reduction = heuristic == null ? null : Reduction.reduce(graph, k, heuristic.weight);
+			time = metrics.phase("reduction", time);
+			Graph reduced = reduction == null ? graph : reduction.reduced;
+			String start = heuristic == null ? "-" : Long.toString(heuristic.weight);
+			String report = reduction == null ? "no reduction" : reduction.report(formulation);
+
+			// forests and graphs of small treewidth are solved exactly without CPLEX
+			KTree exact = TreeDecompositionDP.solve(reduced, k);
+			time = metrics.phase("dp", time);
+			if (exact != null) {
+				metrics.status = "Optimal";
+				metrics.objective = exact.weight;
+				metrics.bound = exact.weight;
+				metrics.gap = 0;
+				metrics.nodes = 0;
+				metrics.solution = reduction == null ? exact : reduction.toOriginal(exact);
+				log(solutions, SolutionLog.Source.DYNAMIC_PROGRAMMING, exact, reduction);
+				return this + " Time = " + metrics.phaseNanos("dp") / 1000000000L + "     Gap = 0.0     N.B&B = 0"
+						+ "     ObjValue = " + exact.weight + "     Start = " + start + "     Reduction: " + report
+						+ "     solved by dynamic programming";
+			}
+
+			// the relaxation gives the bound the model would have, often a lighter
+			// tree, and bounds on the trees through every edge and vertex: those
+			// bounded above the best tree are removed before the model is built
+			LagrangianRelaxation relaxation = new LagrangianRelaxation(reduced, k);
+			KTree relaxed = relaxation.solve(timeLimit * LAGRANGIAN_SHARE,
+					heuristic == null ? null : reduction.toReduced(heuristic));
+			log(solutions, SolutionLog.Source.LAGRANGIAN, relaxed, reduction);
+			Reduction unfixed = reduction;
+			if (relaxed != null) {
+				heuristic = reduction == null ? relaxed : reduction.toOriginal(relaxed);
+				reduction = reduction == null ? Reduction.reduce(graph, k, relaxed.weight)
+						: reduction.fix(k, relaxed.weight, relaxation.edgeBound, relaxation.vertexBound);
+				reduced = reduction.reduced;
+				start = Long.toString(heuristic.weight);
+				report = reduction.report(formulation);
+			}
+			long lowerBound = relaxation.lowerBound();
+			double[] vertexBound = remap(relaxation.vertexBound, unfixed, reduction);
+			time = metrics.phase("lagrangian", time);
+
+			// a model too large for a SparseModel or for the memory leaves the time
+			// to the metaheuristic
+			SparseModel sparse = null;
+			if (!modelFree && Footprint.estimate(formulation, reduced.numberOfNodes, reduced.numberOfEdges, strengthening)
+					.fitsSparseModel())
+				try {
+					sparse = formulation.generate(reduced, k, strengthening);
+				} catch (OutOfMemoryError | IllegalArgumentException e) {
+					sparse = null;
+				}
+			if (sparse == null) {
+				time = metrics.phase("generate", time);
+				return metaheuristic(reduced, reduction, heuristic, lowerBound, timeLimit, metrics, started, time,
+						report, solutions);
+			}
+			time = metrics.phase("generate", time);
+			metrics.model(sparse);
+			if (decomposed())
+				return rooted(reduced, reduction, sparse, heuristic, lowerBound, vertexBound, timeLimit, metrics,
+						started, time, start, report, solutions);
+			CplexBackend backend = new CplexBackend(model);
+			backend.load(sparse);
+			if (formulation == Formulation.BC)
+				BranchAndCut.attach(backend, reduced, sparse);
+			else if (formulation == Formulation.BENDERS)
+				benders = BendersDecomposition.attach(backend, reduced, sparse, cores);
+			time = metrics.phase("load", time);
+			if (heuristic != null)
+				MipStart.add(backend, reduced, sparse, reduction.toReduced(heuristic));
+			time = metrics.phase("mipStart", time);
+			IncumbentCallback.attach(backend, reduced, sparse, reduction, solutions, progress);
+
+			// the solve gets what the phases before it left of the time
+			double left = Math.max(timeLimit - (System.nanoTime() - started) / 1e9, 0);
+			model.setParam(IloCplex.Param.TimeLimit, left);
+			boolean solved;
+			if (formulation == Formulation.MCF_LAZY) {
+				CommodityGeneration generation = new CommodityGeneration(backend, reduced, sparse);
+				solved = generation.solve(left, heuristic == null ? null : reduction.toReduced(heuristic));
+				report += "     Commodities = " + generation.commodities() + " in " + generation.rounds + " rounds";
+				metrics.model(sparse);
+			} else
+				solved = model.solve();
+			time = metrics.phase("solve", time);
+
+			metrics.status = String.valueOf(model.getStatus());
+			IloCplex.CplexStatus cplexStatus = model.getCplexStatus();
+			metrics.cplexStatus = cplexStatus == null ? -1 : cplexStatus.getValue();
+			if (solved) {
+				metrics.objective = model.getObjValue();
+				metrics.bound = model.getBestObjValue();
+				metrics.gap = model.getMIPRelativeGap();
+				metrics.nodes = model.getNnodes64();
+				if (progress != null)
+					progress.finish(metrics.bound, metrics.objective, metrics.gap, metrics.nodes);
+				KTree solution = KTree.fromValues(reduced,
+						model.getValues(backend.columns(sparse.xStart, reduced.numberOfArcs)),
+						model.getValues(backend.columns(sparse.yStart, reduced.numberOfNodes)));
+				metrics.solution = reduction == null ? solution : reduction.toOriginal(solution);
+				log(solutions, SolutionLog.Source.CPLEX, solution, reduction);
+			}
+			metrics.phase("extraction", time);
+
+			long seconds = metrics.phaseNanos("solve") / 1000000000L;
+			if (solved)
+				return this + " Time = " + seconds + "     Gap = " + metrics.gap + "     N.B&B = " + metrics.nodes
+						+ "     ObjValue = " + metrics.objective + "     Start = " + start + "     Reduction: " + report;
+			return this + " Time = " + seconds + "     no solution, status = " + metrics.status + "     Reduction: "
+					+ report;
+		} finally {
+			if (benders != null)
+				benders.shutdown();
+			model.end();
+		}
+	}
+
+	// solved by a RootedDecomposition; CommodityGeneration grows a single model, it is not decomposed
+	boolean decomposed() {
+		return rooted && !modelFree && formulation != Formulation.MCF_LAZY;
+	}
+
+	// started is when the run began, the time left is counted from it; the
+	// Lagrangian bounds of the trees through every vertex order and prune the roots
+	private String rooted(Graph reduced, Reduction reduction, SparseModel sparse, KTree heuristic, long lowerBound,
+			double[] vertexBound, double timeLimit, RunMetrics metrics, long started, long time, String start,
+			String report, SolutionLog solutions) throws IloException {
+		RootedDecomposition decomposition = new RootedDecomposition(reduced, k, sparse, formulation, workers,
+				vertexBound);
+		decomposition.log(solutions, reduction);
+		KTree tree = heuristic == null ? null : reduction.toReduced(heuristic);
+		try {
+			tree = decomposition.solve(Math.max(timeLimit - (time - started) / 1e9, 0), tree);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		time = metrics.phase("solve", time);
+		if (tree != null) {
+			metrics.objective = tree.weight;
+			metrics.bound = Math.min(Math.max(decomposition.bound(), lowerBound), tree.weight);
+			metrics.status = decomposition.optimal() || metrics.bound == tree.weight ? "Optimal" : "Feasible";
+			metrics.gap = (tree.weight - metrics.bound) / (1e-10 + tree.weight);
+			metrics.nodes = decomposition.nodes();
+			metrics.solution = reduction == null ? tree : reduction.toOriginal(tree);
+		} else
+			metrics.status = decomposition.optimal() ? "Infeasible" : "Unknown";
+		metrics.phase("extraction", time);
+
+		long seconds = metrics.phaseNanos("solve") / 1000000000L;
+		if (tree == null)
+			return this + " Time = " + seconds + "     no solution, status = " + metrics.status + "     Reduction: "
+					+ report + "     " + decomposition.report();
+		return this + " Time = " + seconds + "     Gap = " + metrics.gap + "     N.B&B = " + metrics.nodes
+				+ "     ObjValue = " + metrics.objective + "     Start = " + start + "     Reduction: " + report + "     "
+				+ decomposition.report();
+	}
+
+	// started is when the run began, the time left is counted from it;
+	// lowerBound is the one of the Lagrangian relaxation
+	private String metaheuristic(Graph reduced, Reduction reduction, KTree heuristic, long lowerBound,
+			double timeLimit, RunMetrics metrics, long started, long time, String report, SolutionLog solutions) {
+		KTree tree = null;
+		try {
+			KTreeSearch search = new KTreeSearch(reduced, k, cores, 1);
+			tree = search.solve(Math.max(timeLimit - (time - started) / 1e9, 0));
+			metrics.improvements = search.progress;
+			log(solutions, SolutionLog.Source.METAHEURISTIC, tree, reduction);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		metrics.phase("metaheuristic", time);
+		if (tree != null && reduction != null)
+			tree = reduction.toOriginal(tree);
+		if (tree == null || heuristic != null && heuristic.weight <= tree.weight)
+			tree = heuristic;
+		long elapsed = (metrics.phaseNanos("lagrangian") + metrics.phaseNanos("metaheuristic")) / 1000000000L;
+		if (tree == null)
+			return this + " Time = " + elapsed + "     model too large, no tree found     Reduction: " + report;
+		metrics.bound = Math.min(lowerBound, tree.weight);
+		metrics.gap = (tree.weight - metrics.bound) / (1e-10 + tree.weight);
+		metrics.status = metrics.bound == tree.weight ? "Optimal" : "Feasible";
+		metrics.objective = tree.weight;
+		metrics.solution = tree;
+		return this + " Time = " + elapsed + "     Gap = " + metrics.gap + "     ObjValue = " + tree.weight
+				+ "     model too large, solved by the metaheuristic     Reduction: " + report;
+	}
+
+	// the bounds of the vertices of the graph reduced by to, given those of the
+	// graph reduced by from; null stands for no reduction
+	private static double[] remap(double[] bound, Reduction from, Reduction to) {
+		if (to == from)
+			return bound;
+		double[] remapped = new double[to.reduced.numberOfNodes];
+		for (int node = 0; node < remapped.length; node++) {
+			int original = to.originalNode[node];
+			remapped[node] = bound[from == null ? original : from.reducedNode[original]];
+		}
+		return remapped;
+	}
+
+	// hands a tree of the reduced graph (may be null) to the log, if any
+	private static void log(SolutionLog solutions, SolutionLog.Source source, KTree tree, Reduction reduction) {
+		if (solutions != null && tree != null)
+			solutions.append(source, reduction == null ? tree : reduction.toOriginal(tree));
+	}
+
+	@Override
+	public String toString() {
+		return "Graph " + InstanceLoader.name(instance) + "  k = n/" + kDivisor + " = " + k + "  Model = " + formulation
+				+ (strengthening.isEmpty() ? "" : " + " + Strengthening.toString(strengthening))
+				+ (rooted ? " rooted" : "") + (modelFree ? " model free" : "");
+	}
+
+}
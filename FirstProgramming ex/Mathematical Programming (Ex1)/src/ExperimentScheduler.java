@@ -0,0 +1,364 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the instance x k x formulation x strengthening grid concurrently. A
+// variant of the Strengthening that does not change a formulation is run once
+// for it.
+//
+// Every job gets threadsPerJob CPLEX threads and coreBudget / threadsPerJob
+// jobs run at the same time; the Benders subproblems and the metaheuristic of
+// a job run on coreBudget workers. Jobs start from the smallest expected
+// model and none is started, or allowed to run, past the campaign deadline:
+// the time limit of each job is cut to the time left.
+//
+// Every job, solved, failed or skipped, appends its RunMetrics as one JSON
+// line to the metrics file. Jobs already solved to optimality by an earlier
+// campaign are answered from the SolutionCache, the others start from the
+// best tree it holds. The AdmissionControl keeps the predicted memory of the
+// running models within a budget.
+public class ExperimentScheduler {
+
+	List<String> instances = new ArrayList<>();
+	int[] kDivisors = { 5, 2 };
+	// the formulations of the original sweep; the others are asked for by name
+	Formulation[] formulations = { Formulation.MTZ, Formulation.SCF, Formulation.MCF };
+	List<Set<Strengthening>> variants = new ArrayList<>(List.of(Strengthening.NONE));
+	int threadsPerJob = 1;
+	int coreBudget = Runtime.getRuntime().availableProcessors();
+	double timeLimit = 3600;
+	double campaignSeconds = Double.POSITIVE_INFINITY;
+	String metricsFile = "metrics.jsonl";
+	String cacheDirectory = "cache";
+	long cacheBytes = 256L << 20;
+	String progressDirectory;
+	double progressInterval = 0.1;
+	String solutionsDirectory = "solutions";
+	AdmissionControl.Policy admissionPolicy = AdmissionControl.Policy.DOWNGRADE;
+	long memoryBudget = AdmissionControl.physicalMemory();
+	boolean rooted;
+	int rootedWorkers = 1;
+
+	// jobs shorter than this are not worth starting
+	private static final double MINIMUM_TIME_LIMIT = 1;
+
+	private final ConcurrentHashMap<String, Graph> graphs = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, AtomicInteger> pendingJobs = new ConcurrentHashMap<>();
+	private PrintWriter metrics;
+	private SolutionCache cache;
+	private AdmissionControl admission;
+
+	// key=value arguments: instances=1,2,data/x.dat k=5,2 formulations=MTZ,SCF
+	// threads=4 cores=32 timeLimit=3600 deadline=86400 (seconds for the whole campaign)
+	// metrics=metrics.jsonl cache=cache (a directory, or off) cacheSize=256 (MB)
+	// strengthening=none,lifted_mtz+flow_capacity,all (variants to compare)
+	// progress=progress (a directory for the solve progress of each job, or off)
+	// progressInterval=0.1 (seconds between samples)
+	// solutions=solutions (a directory for the SolutionLog of each job, or off)
+	// memory=65536 (MB for the models of the running jobs, the physical memory by
+	// default) admission=downgrade|refuse|off (for a model over the budget)
+	// rooted=true (solve by RootedDecomposition, one subproblem per entry vertex)
+	// rootedWorkers=1 (subproblems solved at the same time, each on its own copy
+	// of the model in a single threaded CPLEX)
+	void configure(String[] args) {
+		Map<String, String[]> options = options(args, "instances", "k", "formulations", "threads", "cores", "timeLimit",
+				"deadline", "metrics", "cache", "cacheSize", "strengthening", "progress", "progressInterval",
+				"solutions", "memory", "admission", "rooted", "rootedWorkers");
+		for (Map.Entry<String, String[]> option : options.entrySet()) {
+			String key = option.getKey();
+			String[] values = option.getValue();
+
+			if (key.equals("instances")) {
+				instances.clear();
+				for (String value : values)
+					instances.add(instanceFile(value));
+			} else if (key.equals("k")) {
+				kDivisors = new int[values.length];
+				for (int i = 0; i < values.length; i++)
+					kDivisors[i] = Integer.parseInt(values[i].startsWith("n/") ? values[i].substring(2) : values[i]);
+			} else if (key.equals("formulations")) {
+				formulations = new Formulation[values.length];
+				for (int i = 0; i < values.length; i++)
+					formulations[i] = Formulation.valueOf(values[i].toUpperCase());
+			} else if (key.equals("threads"))
+				threadsPerJob = Integer.parseInt(values[0]);
+			else if (key.equals("cores"))
+				coreBudget = Integer.parseInt(values[0]);
+			else if (key.equals("timeLimit"))
+				timeLimit = Double.parseDouble(values[0]);
+			else if (key.equals("deadline"))
+				campaignSeconds = Double.parseDouble(values[0]);
+			else if (key.equals("metrics"))
+				metricsFile = values[0];
+			else if (key.equals("cache"))
+				cacheDirectory = values[0].equals("off") ? null : values[0];
+			else if (key.equals("cacheSize"))
+				cacheBytes = Long.parseLong(values[0]) << 20;
+			else if (key.equals("strengthening")) {
+				variants.clear();
+				for (String value : values)
+					variants.add(Strengthening.parse(value));
+			} else if (key.equals("progress"))
+				progressDirectory = values[0].equals("off") ? null : values[0];
+			else if (key.equals("progressInterval"))
+				progressInterval = Double.parseDouble(values[0]);
+			else if (key.equals("solutions"))
+				solutionsDirectory = values[0].equals("off") ? null : values[0];
+			else if (key.equals("memory"))
+				memoryBudget = Long.parseLong(values[0]) << 20;
+			else if (key.equals("admission"))
+				admissionPolicy = AdmissionControl.Policy.valueOf(values[0].toUpperCase());
+			else if (key.equals("rooted"))
+				rooted = Boolean.parseBoolean(values[0]);
+			else if (key.equals("rootedWorkers"))
+				rootedWorkers = Integer.parseInt(values[0]);
+		}
+
+		if (instances.isEmpty())
+			for (int i = 1; i <= 10; i++)
+				instances.add(instanceFile(Integer.toString(i)));
+	}
+
+	// "7" stands for data/g07.kct when it has been compiled, data/g07.dat
+	// otherwise; anything else is a path
+	static String instanceFile(String instance) {
+		if (!instance.matches("\\d+"))
+			return instance;
+		int i = Integer.parseInt(instance);
+		String name = i <= 9 ? "data/g0" + i : "data/g" + i;
+		return new File(name + ".kct").exists() ? name + ".kct" : name + ".dat";
+	}
+
+	List<Experiment> jobs() throws IOException {
+		List<Experiment> jobs = new ArrayList<>();
+		for (String instance : instances) {
+			int[] sizes = InstanceLoader.readSizes(instance);
+			for (int kDivisor : kDivisors)
+				for (Formulation formulation : formulations) {
+					Set<Set<Strengthening>> distinct = new LinkedHashSet<>();
+					for (Set<Strengthening> variant : variants)
+						distinct.add(Strengthening.applicable(variant, formulation));
+					for (Set<Strengthening> variant : distinct) {
+						Experiment job = new Experiment(instance, sizes[0], sizes[1], kDivisor, formulation, variant);
+						job.rooted = rooted;
+						job.workers = rootedWorkers;
+						job.cores = coreBudget;
+						jobs.add(job);
+					}
+				}
+		}
+		jobs.sort(Comparator.comparingDouble(job -> job.expectedCost));
+		return jobs;
+	}
+
+	void run() throws IOException, InterruptedException {
+		long start = System.nanoTime();
+		long deadline = Double.isInfinite(campaignSeconds) ? Long.MAX_VALUE : start + (long) (campaignSeconds * 1e9);
+
+		List<Experiment> jobs = jobs();
+		for (Experiment job : jobs)
+			pendingJobs.computeIfAbsent(job.instance, instance -> new AtomicInteger()).incrementAndGet();
+
+		int threads = Math.max(1, Math.min(threadsPerJob, coreBudget));
+		int workers = Math.max(1, coreBudget / threads);
+		System.out.println(jobs.size() + " jobs on " + workers + " workers with " + threads + " threads each");
+
+		cache = cacheDirectory == null ? null : new SolutionCache(cacheDirectory, cacheBytes);
+		Set<Formulation> scheduled = EnumSet.noneOf(Formulation.class);
+		scheduled.addAll(Arrays.asList(formulations));
+		admission = new AdmissionControl(admissionPolicy, memoryBudget, scheduled);
+		if (progressDirectory != null)
+			new File(progressDirectory).mkdirs();
+		if (solutionsDirectory != null)
+			new File(solutionsDirectory).mkdirs();
+		metrics = new PrintWriter(new FileWriter(metricsFile, true));
+		try {
+			ExecutorService pool = Executors.newFixedThreadPool(workers);
+			for (Experiment job : jobs)
+				pool.submit(() -> runJob(job, threads, deadline));
+			pool.shutdown();
+
+			while (!pool.awaitTermination(1, TimeUnit.MINUTES))
+				if (System.nanoTime() > deadline)
+					System.out.println("campaign deadline passed, waiting for the running jobs to hit their time limit");
+		} finally {
+			metrics.close();
+		}
+	}
+
+	private void runJob(Experiment requested, int threads, long deadline) {
+		AdmissionControl.Decision decision = admission.decide(requested);
+		Experiment job = decision.job == null ? requested : decision.job;
+		double jobTimeLimit = jobTimeLimit(deadline);
+		RunMetrics run = new RunMetrics(job, threads, jobTimeLimit);
+		run.admission = decision.reason;
+		run.predictedBytes = decision.footprint.bytes();
+		run.heapBefore = RunMetrics.usedHeap();
+		ProgressRecorder progress = null;
+		SolutionLog solutions = null;
+		boolean reserved = false;
+		try {
+			if (decision.job == null) {
+				System.out.println(requested + " " + decision.reason);
+				run.status = "refused";
+				return;
+			}
+			if (job != requested)
+				System.out.println(requested + " " + decision.reason);
+
+			SolutionCache.Entry cached = cache == null ? null : cache.get(job);
+			if (cached != null && cached.optimal()) {
+				System.out.println(job + " cached     Gap = " + cached.gap + "     ObjValue = " + cached.objective);
+				run.status = "cached";
+				run.objective = cached.objective;
+				run.bound = cached.bound;
+				run.gap = cached.gap;
+				return;
+			}
+			boolean queued = admission.acquire(decision.footprint);
+			reserved = true;
+			if (queued) {
+				System.out.println(job + " waited for the memory of the running jobs");
+				run.admission += ", queued";
+				jobTimeLimit = jobTimeLimit(deadline);
+				run.timeLimit = jobTimeLimit;
+			}
+			if (jobTimeLimit < MINIMUM_TIME_LIMIT) {
+				System.out.println(job + " skipped, campaign deadline reached");
+				run.status = "skipped";
+				return;
+			}
+
+			// parse is the time this job waited for the graph, 0 when it was cached
+			long time = System.nanoTime();
+			Graph graph = graphs.computeIfAbsent(job.instance, instance -> {
+				try {
+					return InstanceLoader.load(instance);
+				} catch (IOException e) {
+					throw new IllegalStateException(e.getMessage(), e);
+				}
+			});
+			run.phase("parse", time);
+			if (progressDirectory != null) {
+				progress = new ProgressRecorder(jobFile(progressDirectory, job, ".csv"), progressInterval);
+				run.progress = progress.file;
+			}
+
+			// the run starts from the lightest verified tree of the cache and of the log
+			TreeValidator validator = new TreeValidator(graph, job.k);
+			KTree resume = cached == null ? null : cached.tree;
+			if (resume != null && !validator.valid(resume)) {
+				System.out.println(job + " cached tree ignored, " + validator.error);
+				resume = null;
+			}
+			if (solutionsDirectory != null) {
+				String file = jobFile(solutionsDirectory, job, ".ksl");
+				try {
+					solutions = new SolutionLog(file, graph, job.k, SolutionCache.instanceHash(job.instance));
+					run.solutions = file;
+					KTree logged = solutions.best();
+					if (logged != null && (resume == null || logged.weight < resume.weight))
+						resume = logged;
+				} catch (IOException e) {
+					System.out.println(job + " no solution log: " + e.getMessage());
+				}
+			}
+			System.out.println(job.run(graph, threads, jobTimeLimit, run, progress, resume, solutions));
+
+			if (run.solution != null && !validator.valid(run.solution)) {
+				System.out.println(job + " solution not cached, " + validator.error);
+				run.error = "invalid solution: " + validator.error;
+				run.solution = null;
+			}
+			if (cache != null && run.solution != null) {
+				SolutionCache.Entry entry = new SolutionCache.Entry();
+				entry.objective = run.objective;
+				entry.bound = run.bound;
+				entry.gap = run.gap;
+				entry.status = run.status;
+				entry.tree = run.solution;
+				cache.put(job, entry);
+			}
+		} catch (Exception | OutOfMemoryError e) {
+			System.out.println(job + " error during the process: " + e);
+			e.printStackTrace();
+			// the whole trace, the exception alone rarely tells where it came from
+			StringWriter trace = new StringWriter();
+			e.printStackTrace(new PrintWriter(trace));
+			run.error = trace.toString();
+		} finally {
+			if (reserved)
+				admission.release(decision.footprint);
+			if (progress != null)
+				progress.close();
+			if (solutions != null) {
+				run.solutionsReport = solutions.report();
+				try {
+					solutions.close();
+				} catch (IOException e) {
+					System.out.println(job + " solution log " + solutions.file + ": " + e);
+				}
+			}
+			// the graph is dropped once all the jobs on the instance are done
+			if (pendingJobs.get(job.instance).decrementAndGet() == 0)
+				graphs.remove(job.instance);
+			run.heapAfter = RunMetrics.usedHeap();
+			record(run);
+		}
+	}
+
+	// key=value,value arguments by key, the last of a repeated key winning; the
+	// tools all parse their arguments this way, each with its own keys
+	static Map<String, String[]> options(String[] args, String... keys) {
+		List<String> known = Arrays.asList(keys);
+		Map<String, String[]> options = new LinkedHashMap<>();
+		for (String arg : args) {
+			int equal = arg.indexOf('=');
+			if (equal < 0)
+				throw new IllegalArgumentException("expected key=value, found " + arg);
+			String key = arg.substring(0, equal);
+			if (!known.contains(key))
+				throw new IllegalArgumentException("unknown option " + key);
+			options.put(key, arg.substring(equal + 1).split(","));
+		}
+		return options;
+	}
+
+	private double jobTimeLimit(long deadline) {
+		double secondsLeft = deadline == Long.MAX_VALUE ? Double.POSITIVE_INFINITY
+				: (deadline - System.nanoTime()) / 1e9;
+		return Math.min(timeLimit, secondsLeft);
+	}
+
+	// progress/g01-k40-MTZ-lifted_mtz.csv
+	private String jobFile(String directory, Experiment job, String extension) {
+		String name = InstanceLoader.name(job.instance) + "-k" + job.k + "-" + job.formulation;
+		if (!job.strengthening.isEmpty())
+			name += "-" + Strengthening.toString(job.strengthening);
+		if (job.rooted)
+			name += "-rooted";
+		return new File(directory, name + extension).getPath();
+	}
+
+	private synchronized void record(RunMetrics run) {
+		metrics.println(run.toJson());
+		metrics.flush();
+	}
+
+}
@@ -0,0 +1,135 @@
+import java.util.Set;
+
+// The predicted size of the model of a formulation on a graph with n nodes
+// (the root included) and m edges, counted from the rows ModelGenerator
+// emits, and the memory it takes: the SparseModel on the heap, and the copy
+// CPLEX keeps outside of it. k changes the coefficients, not the sizes, and
+// the reduction is not known before the run, so the prediction is for the
+// unreduced graph and errs on the large side.
+//
+// The CPLEX figures are rough: the matrix stored by rows and by columns,
+// once for the original model and once for the presolved one.
+public class Footprint {
+
+	static final long CPLEX_BYTES_PER_NONZERO = 48;
+	static final long CPLEX_BYTES_PER_VECTOR = 100;
+	// lb, ub and objective as doubles, the type as a byte
+	static final long HEAP_BYTES_PER_COLUMN = 25;
+	// rowStart, rhs and sense
+	static final long HEAP_BYTES_PER_ROW = 13;
+	// index and value
+	static final long HEAP_BYTES_PER_NONZERO = 12;
+	// tail, head, reverse, weight, the in and out adjacency
+	static final long GRAPH_BYTES_PER_ARC = 24;
+
+	final Formulation formulation;
+	final long columns;
+	final long rows;
+	final long nonZeros;
+	final long heapBytes;
+	final long nativeBytes;
+
+	private Footprint(Formulation formulation, long columns, long rows, long nonZeros, long arcs) {
+		this.formulation = formulation;
+		this.columns = columns;
+		this.rows = rows;
+		this.nonZeros = nonZeros;
+		this.heapBytes = columns * HEAP_BYTES_PER_COLUMN + rows * HEAP_BYTES_PER_ROW
+				+ nonZeros * HEAP_BYTES_PER_NONZERO + arcs * GRAPH_BYTES_PER_ARC;
+		this.nativeBytes = nonZeros * CPLEX_BYTES_PER_NONZERO + (columns + rows) * CPLEX_BYTES_PER_VECTOR;
+	}
+
+	static Footprint estimate(Formulation formulation, int n, int m, Set<Strengthening> strengthening) {
+		long rootEdges = n - 1;
+		long edges = m - rootEdges;
+		long arcs = rootEdges + 2 * edges;
+
+		// x, y and the rows (2) - (6)
+		long columns = arcs + n;
+		long rows = n + 2 + edges;
+		long nonZeros = n + 2 * arcs + n - 1 + rootEdges + 4 * edges;
+		if (strengthening.contains(Strengthening.ARC_LINKING)) {
+			rows += 2 * edges;
+			nonZeros += 4 * edges;
+		}
+		if (strengthening.contains(Strengthening.EDGE_LINKING)) {
+			rows += 2 * edges;
+			nonZeros += 6 * edges;
+		}
+
+		if (formulation == Formulation.MTZ) {
+			// u, (7), (8), (9) and (10)
+			columns += n;
+			rows += 2 * (n - 1) + 2 * edges + 2;
+			nonZeros += 4 * (n - 1) + 6 * edges + 2;
+			if (strengthening.contains(Strengthening.LIFTED_MTZ))
+				nonZeros += 2 * edges;
+		} else if (formulation == Formulation.SCF) {
+			// f, (19) - (22)
+			columns += arcs;
+			rows += 1 + n - 1 + arcs + 1;
+			nonZeros += rootEdges + 2 * arcs - rootEdges + n - 1 + 2 * arcs + 1;
+		} else if (formulation == Formulation.MCF || formulation == Formulation.MCF_LAZY) {
+			// (33), then f, (31) and (32) of every commodity; the lazy one guesses
+			// how many are generated, as Formulation.expectedSize
+			boolean all = formulation == Formulation.MCF;
+			long commodities = all ? n : (long) Math.sqrt(n);
+			columns += commodities * arcs;
+			rows += 1 + commodities * (n + arcs);
+			// commodity 0 has no y in (31)
+			nonZeros += 1 + commodities * (4 * arcs + 2) - (all ? 2 : 0);
+		} else {
+			// BC and the Benders master: y_0 = 1, the cuts come later
+			rows += 1;
+			nonZeros += 1;
+		}
+		return new Footprint(formulation, columns, rows, nonZeros, arcs);
+	}
+
+	// a rooted job loads the model in the CPLEX of each of its workers
+	static Footprint estimate(Experiment job) {
+		if (job.modelFree)
+			return graph(job.numberOfNodes, job.numberOfEdges);
+		Footprint model = estimate(job.formulation, job.numberOfNodes, job.numberOfEdges, job.strengthening);
+		return job.decomposed() ? model.copies(job.workers) : model;
+	}
+
+	// the model loaded by that many CPLEX instances, the SparseModel is shared
+	Footprint copies(int copies) {
+		return new Footprint(this, copies);
+	}
+
+	private Footprint(Footprint model, int copies) {
+		this.formulation = model.formulation;
+		this.columns = model.columns;
+		this.rows = model.rows;
+		this.nonZeros = model.nonZeros;
+		this.heapBytes = model.heapBytes;
+		this.nativeBytes = copies * model.nativeBytes;
+	}
+
+	// a run without a model only holds the graph
+	static Footprint graph(int n, int m) {
+		return new Footprint(null, 0, 0, 0, (long) (n - 1) + 2L * (m - (n - 1)));
+	}
+
+	// the CSR arrays of SparseModel are indexed by int
+	boolean fitsSparseModel() {
+		return columns <= Integer.MAX_VALUE && rows < Integer.MAX_VALUE && nonZeros <= Integer.MAX_VALUE;
+	}
+
+	long bytes() {
+		return heapBytes + nativeBytes;
+	}
+
+	static String megabytes(long bytes) {
+		return (bytes >> 20) + " MB";
+	}
+
+	@Override
+	public String toString() {
+		return formulation + ": " + columns + " columns, " + rows + " rows, " + nonZeros + " nonzeros, heap "
+				+ megabytes(heapBytes) + ", CPLEX " + megabytes(nativeBytes);
+	}
+
+}
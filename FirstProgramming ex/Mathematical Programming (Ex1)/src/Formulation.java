@@ -0,0 +1,102 @@
+import java.util.Set;
+
+// The formulations that can be solved, with a rough size of their models
+// used to order the jobs of a campaign.
+public enum Formulation {
+
+	MTZ, SCF, MCF,
+
+	// x and y only, connectivity cuts separated by BranchAndCut
+	BC,
+
+	// MCF with the commodities added on demand by CommodityGeneration
+	MCF_LAZY,
+
+	// master of the Benders decomposition of MCF, see BendersDecomposition
+	BENDERS;
+
+	SparseModel generate(Graph graph, int k) {
+		return generate(graph, k, Strengthening.NONE);
+	}
+
+	SparseModel generate(Graph graph, int k, Set<Strengthening> strengthening) {
+		if (strengthening.isEmpty()) {
+			if (this == MTZ)
+				return ModelGenerator.mtz(graph, k);
+			if (this == SCF)
+				return ModelGenerator.scf(graph, k);
+			if (this == MCF)
+				return ModelGenerator.mcf(graph, k);
+			if (this == MCF_LAZY)
+				return ModelGenerator.mcf(graph, k, new int[0]);
+			// BC and the Benders master share the model
+			return ModelGenerator.bc(graph, k);
+		}
+		if (this == MCF)
+			ModelGenerator.checkMcfSize(graph);
+		// sized for the plain model, the strengthened rows grow it
+		long nonZeros = (long) expectedSize(graph.numberOfNodes, graph.numberOfEdges) + 4L * graph.numberOfArcs;
+		SparseModel model = new SparseModel((int) columns(graph.numberOfNodes, graph.numberOfArcs),
+				(int) (nonZeros / 3), (int) Math.min(nonZeros, Integer.MAX_VALUE));
+		return generate(graph, k, model, strengthening);
+	}
+
+	// emits the model into the given one, a ModelWriter streams it to a file;
+	// MCF is not limited to the sizes a SparseModel can hold
+	SparseModel generate(Graph graph, int k, SparseModel model) {
+		return generate(graph, k, model, Strengthening.NONE);
+	}
+
+	SparseModel generate(Graph graph, int k, SparseModel model, Set<Strengthening> strengthening) {
+		if (this == MTZ)
+			return ModelGenerator.mtz(graph, k, model, strengthening);
+		if (this == SCF)
+			return ModelGenerator.scf(graph, k, model, strengthening);
+		if (this == MCF)
+			return ModelGenerator.mcf(graph, k, ModelGenerator.allCommodities(graph.numberOfNodes), model,
+					strengthening);
+		if (this == MCF_LAZY)
+			return ModelGenerator.mcf(graph, k, new int[0], model, strengthening);
+		return ModelGenerator.bc(graph, k, model, strengthening);
+	}
+
+	// the formulation with the smaller model to fall back to, null for the lightest
+	Formulation lighter() {
+		if (this == MCF)
+			return MCF_LAZY;
+		if (this == SCF)
+			return MTZ;
+		if (this == BC)
+			return null;
+		// MCF_LAZY, MTZ and the Benders master: x, y and the cuts
+		return BC;
+	}
+
+	// number of variables of the model
+	long columns(int numberOfNodes, int numberOfArcs) {
+		if (this == MTZ)
+			return numberOfArcs + 2L * numberOfNodes;
+		if (this == SCF)
+			return 2L * numberOfArcs + numberOfNodes;
+		if (this == MCF)
+			return (long) numberOfNodes * numberOfArcs + numberOfArcs + numberOfNodes;
+		// BC, BENDERS, and MCF_LAZY before any commodity is generated
+		return numberOfArcs + numberOfNodes;
+	}
+
+	// approximate number of nonzeros of the model on a graph with the given sizes
+	double expectedSize(int numberOfNodes, int numberOfEdges) {
+		double arcs = 2.0 * numberOfEdges - (numberOfNodes - 1);
+		if (this == MTZ)
+			return 8 * arcs;
+		if (this == SCF)
+			return 9 * arcs;
+		if (this == MCF)
+			return 4 * arcs * numberOfNodes;
+		if (this == MCF_LAZY)
+			return 4 * arcs * Math.sqrt(numberOfNodes); // guess on the commodities generated
+		// the cuts make the model grow, count it as an SCF
+		return 9 * arcs;
+	}
+
+}
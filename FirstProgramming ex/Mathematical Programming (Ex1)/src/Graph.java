@@ -0,0 +1,121 @@
+// Array-backed instance graph, built once after reading the instance.
+//
+// Arcs keep the numbering used by the models: arc e (0 <= e < numberOfEdges)
+// is (endpoint_1, endpoint_2) of edge e, and every edge not touching the root
+// gets its reverse arc (endpoint_2, endpoint_1) numbered from numberOfEdges on,
+// in edge order. Since the root edges come first in the data files this gives
+// back the old "index + numberOfEdges - (numberOfNodes - 1)" position.
+// There are no arcs entering the root 0.
+public class Graph {
+
+	final int numberOfNodes;
+	final int numberOfEdges;
+	final int numberOfArcs;
+
+	// per arc
+	final int[] tail;
+	final int[] head;
+	final int[] weight;
+	final int[] reverse; // -1 for the arcs leaving the root
+
+	// CSR incidence: the arcs leaving node v are outArcs[outStart[v] .. outStart[v+1]-1]
+	final int[] outStart;
+	final int[] outArcs;
+	final int[] inStart;
+	final int[] inArcs;
+
+	Graph(int numberOfNodes, int numberOfEdges, int[] endpoint_1, int[] endpoint_2, int[] edgeWeight) {
+		this.numberOfNodes = numberOfNodes;
+		this.numberOfEdges = numberOfEdges;
+
+		int rootEdges = 0;
+		for (int edge = 0; edge < numberOfEdges; edge++)
+			if (endpoint_1[edge] == 0 || endpoint_2[edge] == 0)
+				rootEdges++;
+		numberOfArcs = numberOfEdges * 2 - rootEdges;
+
+		tail = new int[numberOfArcs];
+		head = new int[numberOfArcs];
+		weight = new int[numberOfArcs];
+		reverse = new int[numberOfArcs];
+
+		int nextReverse = numberOfEdges;
+		for (int edge = 0; edge < numberOfEdges; edge++) {
+			int endPoint_1 = endpoint_1[edge];
+			int endPoint_2 = endpoint_2[edge];
+			// root edges are always oriented away from 0
+			if (endPoint_2 == 0) {
+				endPoint_2 = endPoint_1;
+				endPoint_1 = 0;
+			}
+			tail[edge] = endPoint_1;
+			head[edge] = endPoint_2;
+			weight[edge] = edgeWeight[edge];
+			reverse[edge] = -1;
+
+			if (endPoint_1 != 0) {
+				tail[nextReverse] = endPoint_2;
+				head[nextReverse] = endPoint_1;
+				weight[nextReverse] = edgeWeight[edge];
+				reverse[nextReverse] = edge;
+				reverse[edge] = nextReverse;
+				nextReverse++;
+			}
+		}
+
+		outStart = new int[numberOfNodes + 1];
+		inStart = new int[numberOfNodes + 1];
+		outArcs = new int[numberOfArcs];
+		inArcs = new int[numberOfArcs];
+		fill(tail, outStart, outArcs);
+		fill(head, inStart, inArcs);
+	}
+
+	// a graph whose arrays were built elsewhere, as stored by BinaryInstance
+	Graph(int numberOfNodes, int numberOfEdges, int[] tail, int[] head, int[] weight, int[] reverse, int[] outStart,
+			int[] outArcs, int[] inStart, int[] inArcs) {
+		this.numberOfNodes = numberOfNodes;
+		this.numberOfEdges = numberOfEdges;
+		this.numberOfArcs = tail.length;
+		this.tail = tail;
+		this.head = head;
+		this.weight = weight;
+		this.reverse = reverse;
+		this.outStart = outStart;
+		this.outArcs = outArcs;
+		this.inStart = inStart;
+		this.inArcs = inArcs;
+	}
+
+	// counting sort of the arcs by the given endpoint
+	private void fill(int[] endpoint, int[] start, int[] arcs) {
+		for (int arc = 0; arc < numberOfArcs; arc++)
+			start[endpoint[arc] + 1]++;
+		for (int node = 0; node < numberOfNodes; node++)
+			start[node + 1] += start[node];
+
+		int[] next = new int[numberOfNodes];
+		for (int arc = 0; arc < numberOfArcs; arc++) {
+			int node = endpoint[arc];
+			arcs[start[node] + next[node]++] = arc;
+		}
+	}
+
+	// the edge an arc comes from
+	int edgeOf(int arc) {
+		return arc < numberOfEdges ? arc : reverse[arc];
+	}
+
+	boolean isRootArc(int arc) {
+		return tail[arc] == 0;
+	}
+
+	int outDegree(int node) {
+		return outStart[node + 1] - outStart[node];
+	}
+
+	int inDegree(int node) {
+		return inStart[node + 1] - inStart[node];
+	}
+
+}
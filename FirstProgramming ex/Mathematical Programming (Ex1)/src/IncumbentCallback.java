@@ -0,0 +1,73 @@
+import ilog.concert.IloException;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+
+// Hands the incumbents of a CPLEX solve on the reduced graph to a SolutionLog,
+// in the numbering of the instance. It is an info callback looking at the
+// incumbent at every call rather than an incumbent callback, which would be a
+// control callback and turn off dynamic search; the values are only asked
+// for when the objective improves on the last tree handed over. CPLEX keeps
+// one info callback per model, so when a ProgressRecorder samples the solve
+// its sampler calls found() instead.
+public class IncumbentCallback extends IloCplex.MIPInfoCallback {
+
+	final SolutionLog log;
+	final Graph graph;
+	final Reduction reduction;
+	final IloNumVar[] x;
+	final IloNumVar[] y;
+
+	private volatile double handed = Double.POSITIVE_INFINITY;
+	private int malformed;
+
+	// reduction may be null when graph is the instance itself
+	IncumbentCallback(SolutionLog log, Graph graph, Reduction reduction, IloNumVar[] x, IloNumVar[] y) {
+		this.log = log;
+		this.graph = graph;
+		this.reduction = reduction;
+		this.x = x;
+		this.y = y;
+	}
+
+	// samples the solve with progress and logs its incumbents to solutions,
+	// either may be null; backend holds the model of graph
+	static void attach(CplexBackend backend, Graph graph, SparseModel model, Reduction reduction, SolutionLog solutions,
+			ProgressRecorder progress) throws IloException {
+		IncumbentCallback incumbents = solutions == null ? null
+				: new IncumbentCallback(solutions, graph, reduction, backend.columns(model.xStart, graph.numberOfArcs),
+						backend.columns(model.yStart, graph.numberOfNodes));
+		if (progress != null)
+			progress.attach(backend.cplex, incumbents);
+		else if (incumbents != null)
+			backend.cplex.use(incumbents);
+	}
+
+	@Override
+	protected void main() throws IloException {
+		if (hasIncumbent() && improves(getIncumbentObjValue()))
+			found(getIncumbentValues(x), getIncumbentValues(y));
+	}
+
+	// the weights are integers
+	boolean improves(double objective) {
+		return objective < handed - 0.5;
+	}
+
+	// the incumbent with values x and y of the model's columns
+	synchronized void found(double[] xValues, double[] yValues) {
+		KTree tree;
+		try {
+			tree = KTree.fromValues(graph, xValues, yValues);
+		} catch (IllegalStateException e) {
+			// the log rejects what is not a k-tree, this is not even a selection of k - 1 edges
+			if (malformed++ == 0)
+				System.out.println(log.file + ": malformed incumbent, " + e.getMessage());
+			return;
+		}
+		if (!improves(tree.weight))
+			return;
+		handed = tree.weight;
+		log.append(SolutionLog.Source.CPLEX, reduction == null ? tree : reduction.toOriginal(tree));
+	}
+
+}
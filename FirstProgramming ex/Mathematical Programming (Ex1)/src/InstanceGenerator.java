@@ -0,0 +1,396 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Writes synthetic instances in the .dat layout InstanceLoader reads: the
+// number of nodes and of edges, the zero weight edges from the artificial
+// root 0 to every vertex, then "index u v weight" for the other edges.
+//
+// - GRID: a square lattice, each vertex linked to its right and lower neighbour;
+// - GEOMETRIC: points in the unit square, linked when closer than the radius
+//   that gives the requested average degree, weights proportional to distance;
+// - POWERLAW: Chung-Lu graph with expected degrees following a power law;
+// - RANDOM: Erdos-Renyi G(n, p) with p = degree / (n - 1).
+//
+// The vertices are cut into chunks of CHUNK_VERTICES and the edges of a chunk
+// are those leaving its vertices towards larger ones, drawn from random
+// streams seeded by the seed and the vertex alone: the file depends on the
+// seed, never on the number of threads. A first pass counts the edges of
+// every chunk for the header and the edge indices, a second writes them,
+// each chunk to a part file when there are several threads, and the parts
+// are then appended to the header. Only GEOMETRIC keeps a few arrays of n
+// entries (the points, sorted by cell); the edges are never held in memory.
+public class InstanceGenerator {
+
+	enum Topology {
+		GRID, GEOMETRIC, POWERLAW, RANDOM
+	}
+
+	static final int CHUNK_VERTICES = 1 << 14;
+
+	private static final long EDGES = 0x9E3779B97F4A7C15L;
+	private static final long POINTS = 0xC2B2AE3D27D4EB4FL;
+
+	final Topology topology;
+	// vertices, without the root
+	final int n;
+	final double degree;
+	final double exponent;
+	final int maxWeight;
+	final long seed;
+
+	// GRID
+	private int width;
+	// GEOMETRIC: the points in cell order, vertex i is the i-th
+	private double radius;
+	private int cellsPerSide;
+	private float[] x;
+	private float[] y;
+	private int[] cellStart;
+	// POWERLAW: w(i) = scale * (i + 1)^power, decreasing
+	private double scale;
+	private double power;
+	private double totalWeight;
+	// RANDOM
+	private double logNotP;
+
+	interface EdgeVisitor {
+		void edge(int u, int v, int weight) throws IOException;
+	}
+
+	InstanceGenerator(Topology topology, int n, double degree, double exponent, int maxWeight, long seed) {
+		if (n < 2)
+			throw new IllegalArgumentException("at least two vertices are needed, not " + n);
+		this.topology = topology;
+		this.n = n;
+		this.degree = degree;
+		this.exponent = exponent;
+		this.maxWeight = maxWeight;
+		this.seed = seed;
+
+		if (topology == Topology.GRID)
+			width = (int) Math.ceil(Math.sqrt(n));
+		else if (topology == Topology.GEOMETRIC)
+			placePoints();
+		else if (topology == Topology.POWERLAW) {
+			if (exponent <= 2)
+				throw new IllegalArgumentException("the power law exponent must be larger than 2, not " + exponent);
+			power = -1 / (exponent - 1);
+			double sum = 0;
+			for (int i = 0; i < n; i++)
+				sum += Math.pow(i + 1, power);
+			scale = degree * n / sum;
+			totalWeight = degree * n;
+		} else {
+			double p = Math.min(degree / (n - 1), 1);
+			logNotP = p >= 1 ? Double.NEGATIVE_INFINITY : Math.log(1 - p);
+		}
+	}
+
+	// the points sorted by cell with a counting sort, cells no narrower than the radius
+	private void placePoints() {
+		radius = Math.sqrt(degree / (Math.PI * n));
+		cellsPerSide = Math.max(1, Math.min((int) (1 / radius), (int) Math.sqrt(n)));
+		int cells = cellsPerSide * cellsPerSide;
+		cellStart = new int[cells + 1];
+		float[] drawnX = new float[n];
+		float[] drawnY = new float[n];
+		int[] cell = new int[n];
+		for (int i = 0; i < n; i++) {
+			SplittableRandom random = random(POINTS, i);
+			drawnX[i] = (float) random.nextDouble();
+			drawnY[i] = (float) random.nextDouble();
+			cell[i] = cellOf(drawnX[i]) * cellsPerSide + cellOf(drawnY[i]);
+			cellStart[cell[i] + 1]++;
+		}
+		for (int c = 0; c < cells; c++)
+			cellStart[c + 1] += cellStart[c];
+		int[] next = new int[cells];
+		x = new float[n];
+		y = new float[n];
+		for (int i = 0; i < n; i++) {
+			int position = cellStart[cell[i]] + next[cell[i]]++;
+			x[position] = drawnX[i];
+			y[position] = drawnY[i];
+		}
+	}
+
+	private int cellOf(float coordinate) {
+		return Math.min((int) (coordinate * cellsPerSide), cellsPerSide - 1);
+	}
+
+	// a stream that depends on the seed, the purpose and the vertex only
+	private SplittableRandom random(long purpose, int vertex) {
+		long z = seed * 0xBF58476D1CE4E5B9L + purpose + vertex * 0x94D049BB133111EBL;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return new SplittableRandom(z ^ (z >>> 31));
+	}
+
+	int chunks() {
+		return (n + CHUNK_VERTICES - 1) / CHUNK_VERTICES;
+	}
+
+	// the edges {u, v} with u < v and u in the chunk, in a fixed order
+	void generate(int chunk, EdgeVisitor visitor) throws IOException {
+		int from = chunk * CHUNK_VERTICES;
+		int to = Math.min(n, from + CHUNK_VERTICES);
+		for (int u = from; u < to; u++) {
+			SplittableRandom random = random(EDGES, u);
+			if (topology == Topology.GRID) {
+				if ((u + 1) % width != 0 && u + 1 < n)
+					visitor.edge(u, u + 1, random.nextInt(maxWeight));
+				if (u + width < n)
+					visitor.edge(u, u + width, random.nextInt(maxWeight));
+			} else if (topology == Topology.GEOMETRIC)
+				geometric(u, visitor);
+			else if (topology == Topology.POWERLAW)
+				chungLu(u, random, visitor);
+			else
+				erdosRenyi(u, random, visitor);
+		}
+	}
+
+	// the points of larger index in the 3 x 3 cells around u; those of a later cell have a larger index
+	private void geometric(int u, EdgeVisitor visitor) throws IOException {
+		int cx = cellOf(x[u]);
+		int cy = cellOf(y[u]);
+		double squared = radius * radius;
+		for (int i = Math.max(cx - 1, 0); i <= Math.min(cx + 1, cellsPerSide - 1); i++)
+			for (int j = Math.max(cy - 1, 0); j <= Math.min(cy + 1, cellsPerSide - 1); j++) {
+				int cell = i * cellsPerSide + j;
+				for (int v = Math.max(u + 1, cellStart[cell]); v < cellStart[cell + 1]; v++) {
+					double dx = x[u] - x[v];
+					double dy = y[u] - y[v];
+					double distance = dx * dx + dy * dy;
+					if (distance < squared)
+						visitor.edge(u, v, Math.min((int) (Math.sqrt(distance / squared) * maxWeight), maxWeight - 1));
+				}
+			}
+	}
+
+	private double weight(int vertex) {
+		return scale * Math.pow(vertex + 1, power);
+	}
+
+	// Miller-Hagberg: skip geometrically with the probability of the current
+	// v, which only decreases with v, then accept with the ratio to the true one
+	private void chungLu(int u, SplittableRandom random, EdgeVisitor visitor) throws IOException {
+		double wu = weight(u);
+		int v = u + 1;
+		double p = v < n ? Math.min(wu * weight(v) / totalWeight, 1) : 0;
+		while (v < n && p > 0) {
+			if (p < 1)
+				v += (int) Math.min(Math.log(1 - random.nextDouble()) / Math.log(1 - p), n);
+			if (v >= n)
+				break;
+			double q = Math.min(wu * weight(v) / totalWeight, 1);
+			if (random.nextDouble() < q / p)
+				visitor.edge(u, v, random.nextInt(maxWeight));
+			p = q;
+			v++;
+		}
+	}
+
+	// Batagelj-Brandes: the gaps between the neighbours of u above u are geometric
+	private void erdosRenyi(int u, SplittableRandom random, EdgeVisitor visitor) throws IOException {
+		int v = u;
+		while (true) {
+			if (logNotP == Double.NEGATIVE_INFINITY)
+				v++;
+			else
+				v += 1 + (int) Math.min(Math.log(1 - random.nextDouble()) / logNotP, n);
+			if (v >= n)
+				return;
+			visitor.edge(u, v, random.nextInt(maxWeight));
+		}
+	}
+
+	// writes the instance to file, returns its number of edges with the root ones
+	long write(String file, int threads) throws IOException, InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			int chunks = chunks();
+			List<Future<Long>> counting = new ArrayList<>();
+			for (int c = 0; c < chunks; c++) {
+				int chunk = c;
+				counting.add(pool.submit(() -> {
+					long[] count = new long[1];
+					generate(chunk, (u, v, weight) -> count[0]++);
+					return count[0];
+				}));
+			}
+			// the first edge index of every chunk, after the n root edges
+			long[] firstIndex = new long[chunks + 1];
+			firstIndex[0] = n;
+			for (int c = 0; c < chunks; c++)
+				firstIndex[c + 1] = firstIndex[c] + get(counting.get(c));
+			long edges = firstIndex[chunks];
+			if (edges > Integer.MAX_VALUE)
+				throw new IOException(edges + " edges do not fit the loader");
+
+			try (FileOutputStream stream = new FileOutputStream(file); LineWriter out = new LineWriter(stream)) {
+				out.number(n + 1).newLine();
+				out.number(edges).newLine();
+				for (int i = 0; i < n; i++)
+					out.number(i).space().number(0).space().number(i + 1).space().number(0).newLine();
+				if (threads == 1) {
+					for (int c = 0; c < chunks; c++)
+						writeChunk(c, firstIndex[c], out);
+					return edges;
+				}
+				out.flush();
+
+				List<Future<File>> parts = new ArrayList<>();
+				for (int c = 0; c < chunks; c++) {
+					int chunk = c;
+					parts.add(pool.submit(() -> {
+						File part = new File(file + ".part" + chunk);
+						try (LineWriter partOut = new LineWriter(new FileOutputStream(part))) {
+							writeChunk(chunk, firstIndex[chunk], partOut);
+						}
+						return part;
+					}));
+				}
+				FileChannel target = stream.getChannel();
+				for (Future<File> future : parts) {
+					File part = get(future);
+					try (FileChannel source = FileChannel.open(part.toPath())) {
+						long size = source.size();
+						for (long position = 0; position < size;)
+							position += source.transferTo(position, size - position, target);
+					}
+					part.delete();
+				}
+			}
+			return edges;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private void writeChunk(int chunk, long firstIndex, LineWriter out) throws IOException {
+		long[] index = { firstIndex };
+		generate(chunk, (u, v, weight) -> out.number(index[0]++).space().number(u + 1).space().number(v + 1).space()
+				.number(weight).newLine());
+	}
+
+	private static <T> T get(Future<T> future) throws IOException, InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	// ASCII numbers straight into a byte buffer, no String per line
+	private static class LineWriter implements AutoCloseable {
+		private final OutputStream out;
+		private final byte[] buffer = new byte[1 << 16];
+		private final byte[] digits = new byte[20];
+		private int length;
+
+		LineWriter(OutputStream out) {
+			this.out = out;
+		}
+
+		LineWriter number(long value) throws IOException {
+			if (length + 21 > buffer.length)
+				flush();
+			if (value < 0) {
+				buffer[length++] = '-';
+				value = -value;
+			}
+			int count = 0;
+			do {
+				digits[count++] = (byte) ('0' + value % 10);
+				value /= 10;
+			} while (value > 0);
+			while (count > 0)
+				buffer[length++] = digits[--count];
+			return this;
+		}
+
+		LineWriter space() throws IOException {
+			return character(' ');
+		}
+
+		LineWriter newLine() throws IOException {
+			return character('\n');
+		}
+
+		private LineWriter character(char c) throws IOException {
+			if (length == buffer.length)
+				flush();
+			buffer[length++] = (byte) c;
+			return this;
+		}
+
+		void flush() throws IOException {
+			out.write(buffer, 0, length);
+			length = 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+			out.close();
+		}
+	}
+
+	// key=value arguments: topology=grid|geometric|powerlaw|random n=1000000
+	// degree=10 (average, ignored by grid) exponent=2.5 (powerlaw) maxWeight=1000
+	// seed=1 threads=4 file=data/big.dat
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Topology topology = Topology.RANDOM;
+		int n = 100000;
+		double degree = 10;
+		double exponent = 2.5;
+		int maxWeight = 1000;
+		long seed = 1;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String file = null;
+		Map<String, String[]> options = ExperimentScheduler.options(args, "topology", "n", "degree", "exponent",
+				"maxWeight", "seed", "threads", "file");
+		for (Map.Entry<String, String[]> option : options.entrySet()) {
+			String key = option.getKey();
+			String value = String.join(",", option.getValue());
+			if (key.equals("topology"))
+				topology = Topology.valueOf(value.toUpperCase());
+			else if (key.equals("n"))
+				n = Integer.parseInt(value);
+			else if (key.equals("degree"))
+				degree = Double.parseDouble(value);
+			else if (key.equals("exponent"))
+				exponent = Double.parseDouble(value);
+			else if (key.equals("maxWeight"))
+				maxWeight = Integer.parseInt(value);
+			else if (key.equals("seed"))
+				seed = Long.parseLong(value);
+			else if (key.equals("threads"))
+				threads = Integer.parseInt(value);
+			else if (key.equals("file"))
+				file = value;
+		}
+		if (file == null)
+			file = "data/" + topology.name().toLowerCase() + "-" + n + "-" + seed + ".dat";
+
+		long start = System.nanoTime();
+		long edges = new InstanceGenerator(topology, n, degree, exponent, maxWeight, seed).write(file, threads);
+		System.out.println(file + ": " + (n + 1) + " nodes, " + edges + " edges in "
+				+ (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+}
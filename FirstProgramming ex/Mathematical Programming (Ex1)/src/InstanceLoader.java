@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads a .dat instance by memory mapping the file and parsing the ASCII
+// integers straight from the bytes into the endpoint and weight arrays,
+// without a String per line or an object per edge.
+//
+// 1) number of nodes
+// 2) number of edges
+// 3) index, node1, node2, weight
+//
+// Compiled .kct instances are handed to BinaryInstance.
+public class InstanceLoader {
+
+	private final String file;
+	private final MappedByteBuffer buffer;
+	private final int limit;
+	private int position;
+	private int line = 1;
+
+	private InstanceLoader(String file, MappedByteBuffer buffer) {
+		this.file = file;
+		this.buffer = buffer;
+		this.limit = buffer.limit();
+	}
+
+	static Graph load(String file) throws IOException {
+		if (BinaryInstance.isBinary(file))
+			return BinaryInstance.load(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException(file + ": " + size + " bytes is too large to be mapped at once");
+			return new InstanceLoader(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size)).parse();
+		}
+	}
+
+	// the file name without directory and extension, as reported by the tools
+	static String name(String instance) {
+		String name = instance.substring(instance.lastIndexOf('/') + 1);
+		return name.endsWith(".dat") || name.endsWith(".kct") ? name.substring(0, name.length() - 4) : name;
+	}
+
+	// the number of nodes and edges in the header of the file
+	static int[] readSizes(String file) throws IOException {
+		if (BinaryInstance.isBinary(file))
+			return BinaryInstance.readSizes(file);
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			long size = Math.min(channel.size(), 64);
+			InstanceLoader loader = new InstanceLoader(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+			int numberOfNodes = loader.nextInt("number of nodes");
+			loader.endOfLine();
+			return new int[] { numberOfNodes, loader.nextInt("number of edges") };
+		}
+	}
+
+	private Graph parse() throws IOException {
+		int numberOfNodes = nextInt("number of nodes");
+		endOfLine();
+		int numberOfEdges = nextInt("number of edges");
+		endOfLine();
+		if (numberOfNodes < 1 || numberOfEdges < 0)
+			throw error("bad sizes " + numberOfNodes + " nodes, " + numberOfEdges + " edges");
+
+		int[] endpoint_1 = new int[numberOfEdges];
+		int[] endpoint_2 = new int[numberOfEdges];
+		int[] weight = new int[numberOfEdges];
+		boolean[] seen = new boolean[numberOfEdges];
+
+		for (int row = 0; row < numberOfEdges; row++) {
+			int index = nextInt("edge index");
+			if (index < 0 || index >= numberOfEdges)
+				throw error("edge index " + index + " out of range [0, " + numberOfEdges + ")");
+			if (seen[index])
+				throw error("edge index " + index + " repeated");
+			seen[index] = true;
+
+			endpoint_1[index] = nextNode("first endpoint", numberOfNodes);
+			endpoint_2[index] = nextNode("second endpoint", numberOfNodes);
+			weight[index] = nextInt("weight");
+			endOfLine();
+		}
+
+		skipBlanks();
+		if (position < limit)
+			throw error("unexpected data after " + numberOfEdges + " edges");
+
+		return new Graph(numberOfNodes, numberOfEdges, endpoint_1, endpoint_2, weight);
+	}
+
+	private int nextNode(String what, int numberOfNodes) throws IOException {
+		int node = nextInt(what);
+		if (node < 0 || node >= numberOfNodes)
+			throw error(what + " " + node + " out of range [0, " + numberOfNodes + ")");
+		return node;
+	}
+
+	private int nextInt(String what) throws IOException {
+		while (position < limit && isSpace(buffer.get(position)))
+			position++;
+		if (position >= limit || buffer.get(position) == '\n')
+			throw error("missing " + what);
+
+		boolean negative = buffer.get(position) == '-';
+		if (negative)
+			position++;
+
+		int start = position;
+		long result = 0;
+		while (position < limit) {
+			byte b = buffer.get(position);
+			if (b < '0' || b > '9')
+				break;
+			result = result * 10 + (b - '0');
+			if (result > Integer.MAX_VALUE)
+				throw error(what + " does not fit an int");
+			position++;
+		}
+		if (position == start || (position < limit && !isSpace(buffer.get(position)) && buffer.get(position) != '\n'))
+			throw error("malformed " + what);
+		return (int) (negative ? -result : result);
+	}
+
+	// the rest of the line must be blank
+	private void endOfLine() throws IOException {
+		while (position < limit && isSpace(buffer.get(position)))
+			position++;
+		if (position < limit) {
+			if (buffer.get(position) != '\n')
+				throw error("unexpected data at end of line");
+			position++;
+			line++;
+		}
+	}
+
+	private void skipBlanks() {
+		while (position < limit) {
+			byte b = buffer.get(position);
+			if (b == '\n')
+				line++;
+			else if (!isSpace(b))
+				break;
+			position++;
+		}
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r';
+	}
+
+	private IOException error(String message) {
+		return new IOException(file + ":" + line + ": " + message);
+	}
+
+}
@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+
+// The cost curve of an instance for every k in a range: each formulation is
+// loaded into CPLEX once and, from one k to the next, only the bounds, right
+// hand sides and coefficients that depend on k are changed in place
+// (CplexBackend.update against the model generated for the new k). Every
+// solve starts from the tree of the previous k extended or pruned by one
+// vertex, and its line is printed as soon as it is done.
+//
+// The sweep works on the whole graph: the reduction depends on k and would
+// change the model structure.
+//
+// key=value arguments: instance=7 formulations=MTZ,SCF from=2 to=50 (default
+// n - 1) timeLimit=60 threads=1
+public class KSweep {
+
+	String instance = ExperimentScheduler.instanceFile("1");
+	List<Formulation> formulations = new ArrayList<>(List.of(Formulation.MTZ, Formulation.SCF));
+	int from = 2;
+	int to = -1;
+	double timeLimit = 60;
+	int threads = 1;
+
+	public static void main(String[] args) throws Exception {
+		KSweep sweep = new KSweep();
+		sweep.configure(args);
+		sweep.run();
+	}
+
+	void configure(String[] args) {
+		Map<String, String[]> options = ExperimentScheduler.options(args, "instance", "formulations", "from", "to",
+				"timeLimit", "threads");
+		for (Map.Entry<String, String[]> option : options.entrySet()) {
+			String key = option.getKey();
+			String[] values = option.getValue();
+
+			if (key.equals("instance"))
+				instance = ExperimentScheduler.instanceFile(values[0]);
+			else if (key.equals("formulations")) {
+				formulations.clear();
+				for (String value : values)
+					formulations.add(Formulation.valueOf(value.toUpperCase()));
+			} else if (key.equals("from"))
+				from = Integer.parseInt(values[0]);
+			else if (key.equals("to"))
+				to = Integer.parseInt(values[0]);
+			else if (key.equals("timeLimit"))
+				timeLimit = Double.parseDouble(values[0]);
+			else if (key.equals("threads"))
+				threads = Integer.parseInt(values[0]);
+		}
+		if (formulations.contains(Formulation.MCF_LAZY))
+			throw new IllegalArgumentException("MCF_LAZY changes its model during the solve and cannot be swept");
+	}
+
+	void run() throws Exception {
+		Graph graph = InstanceLoader.load(instance);
+		int last = to < 0 ? graph.numberOfNodes - 1 : Math.min(to, graph.numberOfNodes - 1);
+		int first = Math.max(2, from);
+		System.out.println(
+				"instance,formulation,k,changes,updateMillis,solveSeconds,status,objective,bound,gap,nodes,start");
+		for (Formulation formulation : formulations)
+			sweep(graph, formulation, first, last);
+	}
+
+	private void sweep(Graph graph, Formulation formulation, int first, int last) throws IloException {
+		int step = first <= last ? 1 : -1;
+		IloCplex cplex = new IloCplex();
+		BendersDecomposition benders = null;
+		try {
+			cplex.setOut(null);
+			cplex.setParam(IloCplex.Param.TimeLimit, timeLimit);
+			cplex.setParam(IloCplex.Param.Threads, threads);
+
+			// the connectivity cuts do not depend on k, the callbacks stay for the whole sweep
+			SparseModel loaded = formulation.generate(graph, first);
+			CplexBackend backend = new CplexBackend(cplex);
+			backend.load(loaded);
+			if (formulation == Formulation.BC)
+				BranchAndCut.attach(backend, graph, loaded);
+			else if (formulation == Formulation.BENDERS)
+				benders = BendersDecomposition.attach(backend, graph, loaded,
+						Runtime.getRuntime().availableProcessors());
+
+			KTree tree = new KTreeHeuristic(graph, first).solve();
+			for (int k = first; k != last + step; k += step) {
+				long time = System.nanoTime();
+				int changes = 0;
+				if (k != first) {
+					SparseModel model = formulation.generate(graph, k);
+					changes = backend.update(loaded, model);
+					loaded = model;
+					tree = tree == null ? null : step > 0 ? extend(graph, tree) : prune(graph, tree);
+				}
+				long updateNanos = System.nanoTime() - time;
+
+				// the starts of the previous k are not feasible any more
+				if (cplex.getNMIPStarts() > 0)
+					cplex.deleteMIPStarts(0, cplex.getNMIPStarts());
+				if (tree != null)
+					MipStart.add(backend, graph, loaded, tree);
+
+				time = System.nanoTime();
+				boolean solved = cplex.solve();
+				double solveSeconds = (System.nanoTime() - time) / 1e9;
+
+				String line = InstanceLoader.name(instance) + "," + formulation + "," + k + "," + changes + ","
+						+ updateNanos / 1000000 + "," + solveSeconds + "," + cplex.getStatus();
+				if (solved) {
+					line += "," + cplex.getObjValue() + "," + cplex.getBestObjValue() + "," + cplex.getMIPRelativeGap()
+							+ "," + cplex.getNnodes64();
+					tree = KTree.fromValues(graph, cplex.getValues(backend.columns(loaded.xStart, graph.numberOfArcs)),
+							cplex.getValues(backend.columns(loaded.yStart, graph.numberOfNodes)));
+				} else
+					line += ",,,,";
+				System.out.println(line + "," + (tree == null ? "" : Long.toString(tree.weight)));
+				System.out.flush();
+			}
+		} finally {
+			if (benders != null)
+				benders.shutdown();
+			cplex.end();
+		}
+	}
+
+	// the tree plus the cheapest edge to a vertex outside it, null if there is none
+	static KTree extend(Graph graph, KTree tree) {
+		boolean[] inTree = new boolean[graph.numberOfNodes];
+		for (int vertex : tree.vertices)
+			inTree[vertex] = true;
+
+		int best = -1;
+		for (int vertex : tree.vertices)
+			for (int pos = graph.outStart[vertex]; pos < graph.outStart[vertex + 1]; pos++) {
+				int arc = graph.outArcs[pos];
+				if (!inTree[graph.head[arc]] && (best < 0 || graph.weight[arc] < graph.weight[best]))
+					best = arc;
+			}
+		if (best < 0)
+			return null;
+
+		int[] vertices = Arrays.copyOf(tree.vertices, tree.vertices.length + 1);
+		int[] edges = Arrays.copyOf(tree.edges, tree.edges.length + 1);
+		vertices[tree.vertices.length] = graph.head[best];
+		edges[tree.edges.length] = graph.edgeOf(best);
+		return new KTree(vertices, edges, tree.weight + graph.weight[best]);
+	}
+
+	// the tree without the leaf on its heaviest leaf edge, null if it has one vertex
+	static KTree prune(Graph graph, KTree tree) {
+		if (tree.vertices.length < 2)
+			return null;
+		int[] degree = new int[graph.numberOfNodes];
+		for (int edge : tree.edges) {
+			degree[graph.tail[edge]]++;
+			degree[graph.head[edge]]++;
+		}
+
+		int worst = -1;
+		for (int i = 0; i < tree.edges.length; i++) {
+			int edge = tree.edges[i];
+			boolean leafEdge = degree[graph.tail[edge]] == 1 || degree[graph.head[edge]] == 1;
+			if (leafEdge && (worst < 0 || graph.weight[edge] > graph.weight[tree.edges[worst]]))
+				worst = i;
+		}
+		int edge = tree.edges[worst];
+		int leaf = degree[graph.tail[edge]] == 1 ? graph.tail[edge] : graph.head[edge];
+
+		int[] vertices = new int[tree.vertices.length - 1];
+		int[] edges = new int[tree.edges.length - 1];
+		for (int i = 0, j = 0; i < tree.vertices.length; i++)
+			if (tree.vertices[i] != leaf)
+				vertices[j++] = tree.vertices[i];
+		for (int i = 0, j = 0; i < tree.edges.length; i++)
+			if (i != worst)
+				edges[j++] = tree.edges[i];
+		return new KTree(vertices, edges, tree.weight - graph.weight[edge]);
+	}
+
+}
@@ -0,0 +1,53 @@
+// A feasible k-cardinality tree: k real vertices joined by k - 1 edges of the
+// graph (the root 0 and its zero-weight edges are left out).
+public class KTree {
+
+	final int[] vertices;
+	final int[] edges;
+	final long weight;
+
+	KTree(int[] vertices, int[] edges, long weight) {
+		this.vertices = vertices;
+		this.edges = edges;
+		this.weight = weight;
+	}
+
+	static long weight(Graph graph, int[] edges) {
+		long weight = 0;
+		for (int edge : edges)
+			weight += graph.weight[edge];
+		return weight;
+	}
+
+	// the tree selected by integer values of x (per arc) and y (per node)
+	static KTree fromValues(Graph graph, double[] x, double[] y) {
+		int k = 0;
+		for (int node = 1; node < graph.numberOfNodes; node++)
+			if (y[node] > 0.5)
+				k++;
+		int[] vertices = new int[k];
+		for (int node = 1, i = 0; node < graph.numberOfNodes; node++)
+			if (y[node] > 0.5)
+				vertices[i++] = node;
+
+		int count = 0;
+		int[] edges = new int[Math.max(k - 1, 0)];
+		for (int edge = 0; edge < graph.numberOfEdges; edge++) {
+			int backward = graph.reverse[edge];
+			if (backward != -1 && x[edge] + x[backward] > 0.5) {
+				if (count == edges.length)
+					throw new IllegalStateException("more than k - 1 edges selected");
+				edges[count++] = edge;
+			}
+		}
+		if (count != edges.length)
+			throw new IllegalStateException(count + " edges selected for " + k + " vertices");
+		return new KTree(vertices, edges, weight(graph, edges));
+	}
+
+	@Override
+	public String toString() {
+		return "k-tree with " + vertices.length + " vertices, weight " + weight;
+	}
+
+}
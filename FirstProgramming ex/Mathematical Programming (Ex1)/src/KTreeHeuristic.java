@@ -0,0 +1,353 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Primal heuristic for the k-cardinality tree: a Prim-like growth of k vertices
+// from every start vertex (in parallel, or as many as a time limit allows),
+// then a node add/drop local search on the best trees found. Works on the real
+// graph, the root 0 is ignored.
+public class KTreeHeuristic {
+
+	// number of the best grown trees that go through the local search
+	static final int LOCAL_SEARCH_STARTS = 4;
+
+	private final Graph graph;
+	private final int k;
+	private final ThreadLocal<Workspace> workspaces;
+
+	KTreeHeuristic(Graph graph, int k) {
+		this.graph = graph;
+		this.k = k;
+		this.workspaces = ThreadLocal.withInitial(Workspace::new);
+	}
+
+	// the best tree found, null if no connected component has k vertices
+	KTree solve() {
+		return solve(Double.POSITIVE_INFINITY);
+	}
+
+	// as solve(), but the growths stop after the given seconds: the first
+	// LOCAL_SEARCH_STARTS start vertices are always grown, the others until then
+	KTree solve(double seconds) {
+		int n = graph.numberOfNodes;
+		if (k < 1 || k >= n)
+			return null;
+
+		long deadline = System.nanoTime() + (long) (Math.min(seconds, 1e9) * 1e9);
+		long[] grown = new long[n];
+		grown[0] = Long.MAX_VALUE;
+		IntStream.range(1, n).parallel().forEach(start -> grown[start] = start > LOCAL_SEARCH_STARTS
+				&& System.nanoTime() >= deadline ? Long.MAX_VALUE : workspaces.get().grow(start));
+
+		int[] starts = IntStream.range(1, n).filter(start -> grown[start] != Long.MAX_VALUE).boxed()
+				.sorted((a, b) -> Long.compare(grown[a], grown[b])).mapToInt(Integer::intValue).toArray();
+		if (starts.length == 0)
+			return null;
+
+		return IntStream.range(0, Math.min(LOCAL_SEARCH_STARTS, starts.length)).parallel().mapToObj(i -> {
+			Workspace workspace = workspaces.get();
+			workspace.grow(starts[i]);
+			return workspace.localSearch();
+		}).min((a, b) -> Long.compare(a.weight, b.weight)).get();
+	}
+
+	// the tree grown from start and improved by the local search, null if the
+	// component of start has less than k vertices
+	KTree search(int start) {
+		Workspace workspace = workspaces.get();
+		return workspace.grow(start) == Long.MAX_VALUE ? null : workspace.localSearch();
+	}
+
+	// the local search from a given k-tree
+	KTree search(KTree tree) {
+		Workspace workspace = workspaces.get();
+		workspace.load(tree);
+		return workspace.localSearch();
+	}
+
+	// per-thread arrays, reused by every growth
+	private class Workspace {
+
+		final int[] mark = new int[graph.numberOfNodes];
+		int stamp;
+
+		long[] heap = new long[16];
+		int heapSize;
+
+		final int[] vertices = new int[k];
+		final int[] edges = new int[Math.max(k - 1, 1)];
+		long weight;
+
+		// local search state, zero outside the tree between two searches
+		final int[] treeDegree = new int[graph.numberOfNodes];
+		final int[] incidentEdges = new int[graph.numberOfNodes]; // xor of the incident tree edges
+		final int[] edgePosition = new int[graph.numberOfEdges];
+		final int[] vertexPosition = new int[graph.numberOfNodes];
+		final long[] bestAdd = new long[graph.numberOfNodes]; // (weight, arc) of the cheapest attachment
+		final long[] secondAdd = new long[graph.numberOfNodes]; // through a different tree vertex
+		final int[] touched = new int[graph.numberOfNodes];
+
+		// grows a tree from start, returns its weight or Long.MAX_VALUE if the
+		// component of start has less than k vertices
+		long grow(int start) {
+			stamp++;
+			heapSize = 0;
+			weight = 0;
+			mark[start] = stamp;
+			vertices[0] = start;
+			pushArcs(start);
+
+			for (int count = 1; count < k; count++) {
+				int arc = -1;
+				while (heapSize > 0) {
+					int candidate = (int) pop();
+					if (mark[graph.head[candidate]] != stamp) {
+						arc = candidate;
+						break;
+					}
+				}
+				if (arc == -1)
+					return Long.MAX_VALUE;
+
+				int node = graph.head[arc];
+				mark[node] = stamp;
+				vertices[count] = node;
+				edges[count - 1] = graph.edgeOf(arc);
+				weight += graph.weight[arc];
+				pushArcs(node);
+			}
+			return weight;
+		}
+
+		// makes tree the current one, as grow() would
+		void load(KTree tree) {
+			stamp++;
+			heapSize = 0;
+			for (int i = 0; i < k; i++) {
+				vertices[i] = tree.vertices[i];
+				mark[vertices[i]] = stamp;
+			}
+			System.arraycopy(tree.edges, 0, edges, 0, k - 1);
+			weight = tree.weight;
+		}
+
+		private void pushArcs(int node) {
+			for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+				int arc = graph.outArcs[pos];
+				if (mark[graph.head[arc]] != stamp)
+					push(((long) graph.weight[arc] << 32) | arc);
+			}
+		}
+
+		private void push(long key) {
+			if (heapSize == heap.length)
+				heap = Arrays.copyOf(heap, heap.length * 2);
+			int i = heapSize++;
+			while (i > 0 && heap[(i - 1) / 2] > key) {
+				heap[i] = heap[(i - 1) / 2];
+				i = (i - 1) / 2;
+			}
+			heap[i] = key;
+		}
+
+		// returns the arc of the minimum key
+		private long pop() {
+			long top = heap[0];
+			long last = heap[--heapSize];
+			int i = 0;
+			while (2 * i + 1 < heapSize) {
+				int child = 2 * i + 1;
+				if (child + 1 < heapSize && heap[child + 1] < heap[child])
+					child++;
+				if (heap[child] >= last)
+					break;
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = last;
+			return top & 0xffffffffL;
+		}
+
+		// improves the tree left by grow(): leaf drop / vertex add swaps, and a
+		// minimum spanning tree of the selected vertices once no swap improves
+		KTree localSearch() {
+			for (int i = 0; i < k; i++)
+				vertexPosition[vertices[i]] = i;
+			for (int i = 0; i < k - 1; i++)
+				addEdge(i, edges[i]);
+
+			int maxSwaps = 50 * k;
+			for (int swaps = 0; swaps < maxSwaps;) {
+				if (swap())
+					swaps++;
+				else if (!spanningTree())
+					break;
+			}
+			KTree tree = new KTree(vertices.clone(), Arrays.copyOf(edges, k - 1), weight);
+			for (int i = 0; i < k; i++) {
+				treeDegree[vertices[i]] = 0;
+				incidentEdges[vertices[i]] = 0;
+			}
+			return tree;
+		}
+
+		private void addEdge(int position, int edge) {
+			edges[position] = edge;
+			edgePosition[edge] = position;
+			int a = graph.tail[edge], b = graph.head[edge];
+			treeDegree[a]++;
+			treeDegree[b]++;
+			incidentEdges[a] ^= edge;
+			incidentEdges[b] ^= edge;
+		}
+
+		private void removeEdge(int edge) {
+			int a = graph.tail[edge], b = graph.head[edge];
+			treeDegree[a]--;
+			treeDegree[b]--;
+			incidentEdges[a] ^= edge;
+			incidentEdges[b] ^= edge;
+		}
+
+		// the best improving swap of a leaf with an outside vertex, applied; false if none
+		private boolean swap() {
+			if (k < 2)
+				return false;
+
+			// cheapest and second cheapest attachment of every outside vertex
+			int touchedCount = 0;
+			for (int i = 0; i < k; i++) {
+				int node = vertices[i];
+				for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+					int arc = graph.outArcs[pos];
+					int other = graph.head[arc];
+					if (mark[other] == stamp)
+						continue;
+					if (mark[other] != -stamp) {
+						mark[other] = -stamp;
+						bestAdd[other] = Long.MAX_VALUE;
+						secondAdd[other] = Long.MAX_VALUE;
+						touched[touchedCount++] = other;
+					}
+					long key = ((long) graph.weight[arc] << 32) | arc;
+					if (key < bestAdd[other]) {
+						if (bestAdd[other] != Long.MAX_VALUE && via(bestAdd[other]) != node)
+							secondAdd[other] = bestAdd[other];
+						bestAdd[other] = key;
+					} else if (key < secondAdd[other] && via(bestAdd[other]) != node)
+						secondAdd[other] = key;
+				}
+			}
+			if (touchedCount == 0)
+				return false;
+
+			int cheapest = touched[0];
+			for (int i = 1; i < touchedCount; i++)
+				if (bestAdd[touched[i]] < bestAdd[cheapest])
+					cheapest = touched[i];
+
+			long bestGain = 0;
+			int bestLeaf = -1;
+			long bestKey = 0;
+			for (int i = 0; i < k; i++) {
+				int leaf = vertices[i];
+				if (treeDegree[leaf] != 1)
+					continue;
+
+				long key = bestAdd[cheapest];
+				if (via(key) == leaf) {
+					// the cheapest attachment goes through the leaf itself
+					key = Long.MAX_VALUE;
+					for (int j = 0; j < touchedCount; j++) {
+						int other = touched[j];
+						long candidate = via(bestAdd[other]) != leaf ? bestAdd[other] : secondAdd[other];
+						if (candidate < key)
+							key = candidate;
+					}
+					if (key == Long.MAX_VALUE)
+						continue;
+				}
+
+				long gain = graph.weight[incidentEdges[leaf]] - (key >> 32);
+				if (gain > bestGain) {
+					bestGain = gain;
+					bestLeaf = leaf;
+					bestKey = key;
+				}
+			}
+
+			// reset the marks of the outside vertices
+			for (int i = 0; i < touchedCount; i++)
+				mark[touched[i]] = 0;
+			if (bestLeaf == -1)
+				return false;
+
+			int arc = (int) (bestKey & 0xffffffffL);
+			int added = graph.head[arc];
+			int leafEdge = incidentEdges[bestLeaf];
+			int position = edgePosition[leafEdge];
+			removeEdge(leafEdge);
+			mark[bestLeaf] = 0;
+
+			int slot = vertexPosition[bestLeaf];
+			vertices[slot] = added;
+			vertexPosition[added] = slot;
+			mark[added] = stamp;
+			addEdge(position, graph.edgeOf(arc));
+			weight -= bestGain;
+			return true;
+		}
+
+		private int via(long key) {
+			return graph.tail[(int) (key & 0xffffffffL)];
+		}
+
+		// replaces the edges by a minimum spanning tree of the selected vertices,
+		// true if that is strictly lighter
+		private boolean spanningTree() {
+			int mst = -stamp - 1; // marks the vertices already spanned, distinct from stamp and -stamp
+			heapSize = 0;
+			long total = 0;
+			int[] tree = new int[k - 1];
+
+			int start = vertices[0];
+			mark[start] = mst;
+			pushInducedArcs(start, mst);
+			for (int count = 0; count < k - 1; count++) {
+				int arc = -1;
+				while (heapSize > 0) {
+					int candidate = (int) pop();
+					if (mark[graph.head[candidate]] == stamp) {
+						arc = candidate;
+						break;
+					}
+				}
+				int node = graph.head[arc];
+				mark[node] = mst;
+				tree[count] = graph.edgeOf(arc);
+				total += graph.weight[arc];
+				pushInducedArcs(node, mst);
+			}
+			for (int i = 0; i < k; i++)
+				mark[vertices[i]] = stamp;
+
+			if (total >= weight)
+				return false;
+			for (int i = 0; i < k - 1; i++)
+				removeEdge(edges[i]);
+			for (int i = 0; i < k - 1; i++)
+				addEdge(i, tree[i]);
+			weight = total;
+			return true;
+		}
+
+		private void pushInducedArcs(int node, int mst) {
+			for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+				int arc = graph.outArcs[pos];
+				if (mark[graph.head[arc]] == stamp)
+					push(((long) graph.weight[arc] << 32) | arc);
+			}
+		}
+
+	}
+
+}
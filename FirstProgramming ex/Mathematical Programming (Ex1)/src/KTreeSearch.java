@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Variable neighbourhood search for the graphs whose models do not fit in
+// memory: it works on the Graph arrays only.
+//
+// Every thread runs its own search from the best of a few grown trees. A
+// shake of size s drops s random leaves of the current tree and attaches s
+// random outside vertices; the local search of KTreeHeuristic then improves
+// it (leaf swaps evaluated incrementally from the cheapest attachments, and
+// the minimum spanning tree of the selected vertices). The search moves to
+// the result when it is not heavier and resets s, otherwise s grows up to
+// maxShake and wraps around.
+//
+// The best tree is shared: a thread publishes every improvement, and a thread
+// that has not improved for RESTART_AFTER shakes continues from the shared
+// best. Each improvement of the shared best is kept in progress as (elapsed
+// milliseconds, weight).
+//
+// key=value arguments: instance=10 k=400 (default n/5) seconds=60
+// threads=(all cores) seed=1
+public class KTreeSearch {
+
+	static final int STARTS = 8;
+	static final int RESTART_AFTER = 200;
+
+	final Graph graph;
+	final int k;
+	final int threads;
+	final long seed;
+	final int maxShake;
+	boolean verbose;
+
+	final List<long[]> progress = Collections.synchronizedList(new ArrayList<>());
+
+	private final KTreeHeuristic localSearch;
+	private final AtomicReference<KTree> best = new AtomicReference<>();
+	private long startTime;
+	private long deadline;
+
+	KTreeSearch(Graph graph, int k, int threads, long seed) {
+		this.graph = graph;
+		this.k = k;
+		this.threads = threads;
+		this.seed = seed;
+		this.maxShake = Math.max(2, k / 10);
+		this.localSearch = new KTreeHeuristic(graph, k);
+	}
+
+	public static void main(String[] args) throws Exception {
+		String instance = ExperimentScheduler.instanceFile("1");
+		int k = -1;
+		double seconds = 60;
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = 1;
+		Map<String, String[]> options = ExperimentScheduler.options(args, "instance", "k", "seconds", "threads",
+				"seed");
+		for (Map.Entry<String, String[]> option : options.entrySet()) {
+			String key = option.getKey();
+			String value = String.join(",", option.getValue());
+
+			if (key.equals("instance"))
+				instance = ExperimentScheduler.instanceFile(value);
+			else if (key.equals("k"))
+				k = Integer.parseInt(value);
+			else if (key.equals("seconds"))
+				seconds = Double.parseDouble(value);
+			else if (key.equals("threads"))
+				threads = Integer.parseInt(value);
+			else if (key.equals("seed"))
+				seed = Long.parseLong(value);
+		}
+
+		Graph graph = InstanceLoader.load(instance);
+		if (k < 0)
+			k = graph.numberOfNodes / 5;
+		KTreeSearch search = new KTreeSearch(graph, k, threads, seed);
+		search.verbose = true;
+		KTree tree = search.solve(seconds);
+		System.out.println(InstanceLoader.name(instance) + " k = " + k + "     "
+				+ (tree == null ? "no tree of k vertices" : "best = " + tree.weight) + "     improvements = "
+				+ search.progress.size());
+	}
+
+	// the best tree found within the given seconds, null if no component has k vertices
+	KTree solve(double seconds) throws InterruptedException {
+		startTime = System.nanoTime();
+		deadline = startTime + (long) Math.min(seconds * 1e9, Long.MAX_VALUE / 2);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<Void>> searches = new ArrayList<>();
+			for (int id = 0; id < threads; id++) {
+				long threadSeed = seed + id;
+				searches.add(() -> {
+					search(new Random(threadSeed));
+					return null;
+				});
+			}
+			for (Future<Void> future : pool.invokeAll(searches))
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+		} finally {
+			pool.shutdownNow();
+		}
+		return best.get();
+	}
+
+	private boolean timeUp() {
+		return System.nanoTime() >= deadline;
+	}
+
+	private void search(Random random) {
+		// start vertices are drawn among the nodes, 0 is the artificial root
+		KTree current = null;
+		for (int attempt = 0; attempt < STARTS && !(attempt > 0 && timeUp()); attempt++) {
+			KTree tree = localSearch.search(1 + random.nextInt(graph.numberOfNodes - 1));
+			if (tree != null && (current == null || tree.weight < current.weight))
+				current = tree;
+		}
+		if (current == null)
+			return;
+		publish(current);
+
+		Shake shake = new Shake();
+		int size = 1;
+		int failures = 0;
+		while (!timeUp()) {
+			KTree candidate = localSearch.search(shake.apply(current, size, random));
+			if (candidate.weight < current.weight) {
+				current = candidate;
+				size = 1;
+				failures = 0;
+				publish(current);
+			} else {
+				if (candidate.weight == current.weight)
+					current = candidate;
+				size = size >= maxShake ? 1 : size + 1;
+				failures++;
+			}
+			if (failures >= RESTART_AFTER) {
+				KTree shared = best.get();
+				if (shared.weight < current.weight)
+					current = shared;
+				failures = 0;
+			}
+		}
+	}
+
+	private void publish(KTree tree) {
+		while (true) {
+			KTree shared = best.get();
+			if (shared != null && shared.weight <= tree.weight)
+				return;
+			if (best.compareAndSet(shared, tree))
+				break;
+		}
+		long millis = (System.nanoTime() - startTime) / 1000000;
+		progress.add(new long[] { millis, tree.weight });
+		if (verbose)
+			System.out.println(millis / 1000.0 + " s     best = " + tree.weight);
+	}
+
+	// per-thread arrays of the shake, reset after every use
+	private class Shake {
+		final int[] degree = new int[graph.numberOfNodes];
+		final boolean[] inTree = new boolean[graph.numberOfNodes];
+		final int[] vertices = new int[k];
+		final int[] edges = new int[Math.max(k - 1, 1)];
+		final List<Integer> leaves = new ArrayList<>();
+		final List<Integer> boundary = new ArrayList<>();
+
+		// the tree with size random leaves replaced by random outside vertices
+		KTree apply(KTree tree, int size, Random random) {
+			int numberOfVertices = k;
+			int numberOfEdges = k - 1;
+			System.arraycopy(tree.vertices, 0, vertices, 0, k);
+			System.arraycopy(tree.edges, 0, edges, 0, k - 1);
+			long weight = tree.weight;
+			for (int i = 0; i < k; i++)
+				inTree[vertices[i]] = true;
+			for (int i = 0; i < numberOfEdges; i++) {
+				degree[graph.tail[edges[i]]]++;
+				degree[graph.head[edges[i]]]++;
+			}
+
+			for (int removed = 0; removed < size && numberOfVertices > 1; removed++) {
+				leaves.clear();
+				for (int i = 0; i < numberOfEdges; i++) {
+					if (degree[graph.tail[edges[i]]] == 1)
+						leaves.add(i);
+					if (degree[graph.head[edges[i]]] == 1)
+						leaves.add(i);
+				}
+				int position = leaves.get(random.nextInt(leaves.size()));
+				int edge = edges[position];
+				int leaf = degree[graph.tail[edge]] == 1 ? graph.tail[edge] : graph.head[edge];
+				degree[graph.tail[edge]]--;
+				degree[graph.head[edge]]--;
+				inTree[leaf] = false;
+				weight -= graph.weight[edge];
+				edges[position] = edges[--numberOfEdges];
+				for (int i = 0; i < numberOfVertices; i++)
+					if (vertices[i] == leaf) {
+						vertices[i] = vertices[--numberOfVertices];
+						break;
+					}
+			}
+
+			// the dropped leaves are outside again, so there is always an arc to attach
+			while (numberOfVertices < k) {
+				boundary.clear();
+				for (int i = 0; i < numberOfVertices; i++)
+					for (int pos = graph.outStart[vertices[i]]; pos < graph.outStart[vertices[i] + 1]; pos++)
+						if (!inTree[graph.head[graph.outArcs[pos]]])
+							boundary.add(graph.outArcs[pos]);
+				int arc = boundary.get(random.nextInt(boundary.size()));
+				int vertex = graph.head[arc];
+				inTree[vertex] = true;
+				degree[graph.tail[arc]]++;
+				degree[vertex]++;
+				weight += graph.weight[arc];
+				vertices[numberOfVertices++] = vertex;
+				edges[numberOfEdges++] = graph.edgeOf(arc);
+			}
+
+			KTree shaken = new KTree(vertices.clone(), Arrays.copyOf(edges, k - 1), weight);
+			for (int i = 0; i < k; i++) {
+				inTree[vertices[i]] = false;
+				degree[vertices[i]] = 0;
+			}
+			return shaken;
+		}
+	}
+
+}
@@ -0,0 +1,510 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Lower bounds for the k-cardinality tree without a model. Relaxing the
+// linking inequalities x_e <= y_u and x_e <= y_v with multipliers a >= 0
+// splits the problem in two independent parts:
+//
+// - x: a forest of exactly k - 1 edges with costs w_e + a_eu + a_ev, the
+//   first k - 1 edges Kruskal accepts;
+// - y: the k vertices of largest prize, the prize of v being the sum of its a.
+//
+// The forest minus the prizes is a lower bound for every a; the multipliers
+// follow the subgradient x_e - y_v with Polyak steps towards the best tree,
+// the factor halving when the bound stalls. Every HEURISTIC_EVERY iterations
+// a tree is grown by Prim from a vertex of large prize on the Lagrangian
+// costs and improved by the KTreeHeuristic local search.
+//
+// The same split bounds the trees forced to use an edge (the edge replaces
+// the heaviest forest edge, its endpoints the smallest prizes taken) or a
+// vertex; edgeBound and vertexBound keep the best of these over the
+// iterations, and Reduction.fix removes what they put above the best tree.
+//
+// Kruskal only sorts the edges up to a threshold, which is any prefix of the
+// sorted order: the one of the previous iteration while it keeps between k - 1
+// and 8 (k - 1) edges, otherwise the 4 (k - 1)-th smallest cost, doubled until
+// the forest is complete. The union find and the heap of the growth are
+// primitive arrays.
+public class LagrangianRelaxation {
+
+	static final int MAX_ITERATIONS = 3000;
+	// the step factor halves after this many iterations without a better bound
+	static final int HALVE_AFTER = 20;
+	static final double MIN_FACTOR = 1e-4;
+	static final int HEURISTIC_EVERY = 10;
+
+	final Graph graph;
+	final int k;
+
+	// the edges that do not touch the root, numbered 0 .. realEdges - 1, with
+	// their endpoints and weights
+	private final int realEdges;
+	private final int[] edge;
+	private final int[] realIndex;
+	private final int[] tailOf;
+	private final int[] headOf;
+	private final int[] weightOf;
+	private final double[] alphaTail;
+	private final double[] alphaHead;
+	private final double[] key;
+	private final boolean[] inForest;
+	private final byte[] gradientTail;
+	private final byte[] gradientHead;
+	private final double[] prize;
+	private final boolean[] chosen;
+	// what taking a vertex out of the chosen ones costs
+	private final double[] forced;
+	private final int[] parent;
+	private final int[] candidates;
+	private final double[] scratch;
+	private double maxForestKey;
+	private double threshold = Double.NEGATIVE_INFINITY;
+	private double smallestChosenPrize;
+
+	// the growth of the heuristic
+	private final KTreeHeuristic localSearch;
+	private final int[] tried;
+	private final int[] inTree;
+	private int stamp;
+	private int[] heapArc = new int[64];
+	private double[] heapKey = new double[64];
+	private int heapSize;
+
+	// the best Lagrangian value and tree, bounds on the trees through an edge
+	// (numbered as in the graph) or a vertex
+	double bound = Double.NEGATIVE_INFINITY;
+	KTree best;
+	final double[] edgeBound;
+	final double[] vertexBound;
+	int iterations;
+	double seconds;
+
+	LagrangianRelaxation(Graph graph, int k) {
+		this.graph = graph;
+		this.k = k;
+		int n = graph.numberOfNodes;
+
+		realIndex = new int[graph.numberOfEdges];
+		int count = 0;
+		for (int e = 0; e < graph.numberOfEdges; e++)
+			realIndex[e] = graph.reverse[e] == -1 ? -1 : count++;
+		realEdges = count;
+		edge = new int[realEdges];
+		tailOf = new int[realEdges];
+		headOf = new int[realEdges];
+		weightOf = new int[realEdges];
+		for (int e = 0; e < graph.numberOfEdges; e++)
+			if (realIndex[e] >= 0) {
+				int i = realIndex[e];
+				edge[i] = e;
+				tailOf[i] = graph.tail[e];
+				headOf[i] = graph.head[e];
+				weightOf[i] = graph.weight[e];
+			}
+
+		alphaTail = new double[realEdges];
+		alphaHead = new double[realEdges];
+		key = new double[realEdges];
+		inForest = new boolean[realEdges];
+		gradientTail = new byte[realEdges];
+		gradientHead = new byte[realEdges];
+		candidates = new int[realEdges];
+		scratch = new double[Math.max(realEdges, n)];
+		prize = new double[n];
+		chosen = new boolean[n];
+		forced = new double[n];
+		parent = new int[n];
+		tried = new int[n];
+		inTree = new int[n];
+		edgeBound = new double[graph.numberOfEdges];
+		vertexBound = new double[n];
+		Arrays.fill(edgeBound, Double.NEGATIVE_INFINITY);
+		Arrays.fill(vertexBound, Double.NEGATIVE_INFINITY);
+		localSearch = new KTreeHeuristic(graph, k);
+	}
+
+	// runs the subgradient method for at most the given time, start (may be
+	// null) being the best known tree; returns the best tree found
+	KTree solve(double timeLimit, KTree start) {
+		long begin = System.nanoTime();
+		long deadline = begin + (long) (Math.min(timeLimit, 1e9) * 1e9);
+		best = start;
+		int n = graph.numberOfNodes;
+		if (k < 2 || k >= n) {
+			// a single vertex weighs 0, and no tree has more vertices than the graph
+			bound = k < 2 ? 0 : Double.POSITIVE_INFINITY;
+			if (k == 1 && best == null && n > 1)
+				best = new KTree(new int[] { 1 }, new int[0], 0);
+			return best;
+		}
+
+		double factor = 2;
+		int stalled = 0;
+		for (int i = 0; i < realEdges; i++)
+			key[i] = weightOf[i];
+		for (iterations = 0; iterations < MAX_ITERATIONS && System.nanoTime() < deadline; iterations++) {
+			double forest = forest();
+			if (forest == Double.POSITIVE_INFINITY) {
+				// not even a forest of k - 1 edges
+				bound = Double.POSITIVE_INFINITY;
+				break;
+			}
+			double value = forest - choose();
+			if (value > bound + 1e-9) {
+				bound = value;
+				stalled = 0;
+			} else if (++stalled >= HALVE_AFTER) {
+				factor /= 2;
+				stalled = 0;
+			}
+			fixingBounds(value);
+
+			if (iterations % HEURISTIC_EVERY == 0)
+				heuristic();
+			// the weights are integers
+			if (best != null && bound > best.weight - 1 + 1e-6 || factor < MIN_FACTOR)
+				break;
+
+			long norm = 0;
+			for (int i = 0; i < realEdges; i++) {
+				int x = inForest[i] ? 1 : 0;
+				int gTail = x - (chosen[tailOf[i]] ? 1 : 0);
+				int gHead = x - (chosen[headOf[i]] ? 1 : 0);
+				gradientTail[i] = (byte) gTail;
+				gradientHead[i] = (byte) gHead;
+				norm += gTail * gTail + gHead * gHead;
+			}
+			if (norm == 0)
+				break;
+			double target = best != null ? best.weight : Math.abs(value) * 1.1 + 1;
+			double step = factor * (target - value) / norm;
+			for (int i = 0; i < realEdges; i++) {
+				if (gradientTail[i] != 0)
+					alphaTail[i] = Math.max(0, alphaTail[i] + step * gradientTail[i]);
+				if (gradientHead[i] != 0)
+					alphaHead[i] = Math.max(0, alphaHead[i] + step * gradientHead[i]);
+				key[i] = weightOf[i] + alphaTail[i] + alphaHead[i];
+			}
+		}
+		seconds = (System.nanoTime() - begin) / 1e9;
+		return best;
+	}
+
+	// the bound rounded up to the integer weights, never below 0
+	long lowerBound() {
+		if (bound == Double.POSITIVE_INFINITY)
+			return Long.MAX_VALUE;
+		return Math.max(0, (long) Math.ceil(bound - 1e-6));
+	}
+
+	// the k - 1 edges Kruskal accepts first, their cost; infinite when the graph has no such forest
+	private double forest() {
+		int n = graph.numberOfNodes;
+		int wanted = k - 1;
+		if (realEdges < wanted)
+			return Double.POSITIVE_INFINITY;
+		int limit = Math.min(realEdges, Math.max(4 * wanted, 64));
+		int count = candidates(threshold);
+		if (count < wanted || count > 2 * limit)
+			count = candidates(threshold(limit));
+		while (true) {
+			sort(candidates, 0, count - 1);
+			Arrays.fill(inForest, false);
+			for (int node = 0; node < n; node++)
+				parent[node] = node;
+			int accepted = 0;
+			double sum = 0;
+			for (int c = 0; c < count && accepted < wanted; c++) {
+				int i = candidates[c];
+				int a = find(tailOf[i]);
+				int b = find(headOf[i]);
+				if (a != b) {
+					parent[a] = b;
+					inForest[i] = true;
+					accepted++;
+					sum += key[i];
+					maxForestKey = key[i];
+				}
+			}
+			if (accepted == wanted)
+				return sum;
+			if (count == realEdges)
+				return Double.POSITIVE_INFINITY;
+			limit = Math.min(realEdges, 2 * Math.max(limit, count));
+			count = candidates(threshold(limit));
+		}
+	}
+
+	// the limit-th smallest cost
+	private double threshold(int limit) {
+		System.arraycopy(key, 0, scratch, 0, realEdges);
+		threshold = select(scratch, realEdges, limit - 1);
+		return threshold;
+	}
+
+	// collects the edges costing at most the threshold, returns how many
+	private int candidates(double threshold) {
+		int count = 0;
+		for (int i = 0; i < realEdges; i++)
+			if (key[i] <= threshold)
+				candidates[count++] = i;
+		return count;
+	}
+
+	private int find(int node) {
+		while (parent[node] != node) {
+			parent[node] = parent[parent[node]];
+			node = parent[node];
+		}
+		return node;
+	}
+
+	// marks the k vertices of largest prize, returns the sum of their prizes
+	private double choose() {
+		int n = graph.numberOfNodes;
+		Arrays.fill(prize, 0);
+		for (int i = 0; i < realEdges; i++) {
+			prize[tailOf[i]] += alphaTail[i];
+			prize[headOf[i]] += alphaHead[i];
+		}
+		System.arraycopy(prize, 1, scratch, 0, n - 1);
+		smallestChosenPrize = select(scratch, n - 1, n - 1 - k);
+
+		double sum = 0;
+		int count = 0;
+		for (int node = 1; node < n; node++) {
+			chosen[node] = prize[node] > smallestChosenPrize;
+			if (chosen[node]) {
+				sum += prize[node];
+				count++;
+			}
+		}
+		for (int node = 1; node < n && count < k; node++)
+			if (!chosen[node] && prize[node] == smallestChosenPrize) {
+				chosen[node] = true;
+				sum += prize[node];
+				count++;
+			}
+		return sum;
+	}
+
+	// what forcing an edge or a vertex into the relaxed solution adds to value
+	private void fixingBounds(double value) {
+		int n = graph.numberOfNodes;
+		for (int node = 1; node < n; node++) {
+			forced[node] = chosen[node] ? 0 : smallestChosenPrize - prize[node];
+			vertexBound[node] = Math.max(vertexBound[node], value + forced[node]);
+		}
+		for (int i = 0; i < realEdges; i++) {
+			double swap = inForest[i] ? 0 : Math.max(0, key[i] - maxForestKey);
+			double bound = value + swap + Math.max(forced[tailOf[i]], forced[headOf[i]]);
+			if (bound > edgeBound[edge[i]])
+				edgeBound[edge[i]] = bound;
+		}
+	}
+
+	// grows a tree on the Lagrangian costs from the chosen vertex of largest
+	// prize not tried yet, then improves it by local search
+	private void heuristic() {
+		int n = graph.numberOfNodes;
+		int start = -1;
+		for (int node = 1; node < n; node++)
+			if (chosen[node] && tried[node] == 0 && (start < 0 || prize[node] > prize[start]))
+				start = node;
+		if (start < 0)
+			return;
+		tried[start] = 1;
+
+		stamp++;
+		heapSize = 0;
+		int[] vertices = new int[k];
+		int[] edges = new int[k - 1];
+		int count = 0;
+		vertices[count++] = start;
+		inTree[start] = stamp;
+		pushArcs(start);
+		while (count < k && heapSize > 0) {
+			int arc = popArc();
+			int next = graph.head[arc];
+			if (inTree[next] == stamp)
+				continue;
+			inTree[next] = stamp;
+			edges[count - 1] = graph.edgeOf(arc);
+			vertices[count++] = next;
+			pushArcs(next);
+		}
+		if (count < k)
+			return;
+		KTree tree = localSearch.search(new KTree(vertices, edges, KTree.weight(graph, edges)));
+		if (best == null || tree.weight < best.weight)
+			best = tree;
+	}
+
+	private void pushArcs(int node) {
+		for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+			int arc = graph.outArcs[pos];
+			if (inTree[graph.head[arc]] == stamp)
+				continue;
+			if (heapSize == heapArc.length) {
+				heapArc = Arrays.copyOf(heapArc, 2 * heapSize);
+				heapKey = Arrays.copyOf(heapKey, 2 * heapSize);
+			}
+			double value = key[realIndex[graph.edgeOf(arc)]];
+			int i = heapSize++;
+			while (i > 0 && heapKey[(i - 1) / 2] > value) {
+				heapArc[i] = heapArc[(i - 1) / 2];
+				heapKey[i] = heapKey[(i - 1) / 2];
+				i = (i - 1) / 2;
+			}
+			heapArc[i] = arc;
+			heapKey[i] = value;
+		}
+	}
+
+	private int popArc() {
+		int top = heapArc[0];
+		int lastArc = heapArc[--heapSize];
+		double lastKey = heapKey[heapSize];
+		int i = 0;
+		while (2 * i + 1 < heapSize) {
+			int child = 2 * i + 1;
+			if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child])
+				child++;
+			if (heapKey[child] >= lastKey)
+				break;
+			heapArc[i] = heapArc[child];
+			heapKey[i] = heapKey[child];
+			i = child;
+		}
+		heapArc[i] = lastArc;
+		heapKey[i] = lastKey;
+		return top;
+	}
+
+	// the value of rank index (from 0) in values[0 .. length), values are reordered
+	private static double select(double[] values, int length, int index) {
+		int low = 0;
+		int high = length - 1;
+		while (low < high) {
+			double pivot = values[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (values[i] < pivot)
+					i++;
+				while (values[j] > pivot)
+					j--;
+				if (i <= j) {
+					double swap = values[i];
+					values[i++] = values[j];
+					values[j--] = swap;
+				}
+			}
+			if (index <= j)
+				high = j;
+			else if (index >= i)
+				low = i;
+			else
+				return values[index];
+		}
+		return values[index];
+	}
+
+	// sorts the edge indices in [low, high] by key
+	private void sort(int[] indices, int low, int high) {
+		while (high - low > 16) {
+			double pivot = key[indices[(low + high) >>> 1]];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (key[indices[i]] < pivot)
+					i++;
+				while (key[indices[j]] > pivot)
+					j--;
+				if (i <= j) {
+					int swap = indices[i];
+					indices[i++] = indices[j];
+					indices[j--] = swap;
+				}
+			}
+			// recurse on the smaller side
+			if (j - low < high - i) {
+				sort(indices, low, j);
+				low = i;
+			} else {
+				sort(indices, i, high);
+				high = j;
+			}
+		}
+		for (int i = low + 1; i <= high; i++) {
+			int index = indices[i];
+			int j = i - 1;
+			while (j >= low && key[indices[j]] > key[index]) {
+				indices[j + 1] = indices[j];
+				j--;
+			}
+			indices[j + 1] = index;
+		}
+	}
+
+	// the edges and vertices that cannot be in a tree as light as the best, as in Reduction
+	int removableEdges() {
+		int count = 0;
+		for (int e = 0; e < graph.numberOfEdges; e++)
+			if (realIndex[e] >= 0 && best != null && edgeBound[e] > best.weight + 1e-6)
+				count++;
+		return count;
+	}
+
+	int removableVertices() {
+		int count = 0;
+		for (int node = 1; node < graph.numberOfNodes; node++)
+			if (best != null && vertexBound[node] > best.weight + 1e-6)
+				count++;
+		return count;
+	}
+
+	// key=value arguments: instances=1,2 k=5,2 (divisors of n) seconds=10
+	public static void main(String[] args) throws Exception {
+		List<String> instances = new ArrayList<>();
+		int[] kDivisors = { 5, 2 };
+		double seconds = 10;
+		Map<String, String[]> options = ExperimentScheduler.options(args, "instances", "k", "seconds");
+		for (Map.Entry<String, String[]> option : options.entrySet()) {
+			String key = option.getKey();
+			String[] values = option.getValue();
+
+			if (key.equals("instances"))
+				for (String value : values)
+					instances.add(ExperimentScheduler.instanceFile(value));
+			else if (key.equals("k")) {
+				kDivisors = new int[values.length];
+				for (int i = 0; i < values.length; i++)
+					kDivisors[i] = Integer.parseInt(values[i]);
+			} else if (key.equals("seconds"))
+				seconds = Double.parseDouble(values[0]);
+		}
+		if (instances.isEmpty())
+			for (int i = 1; i <= 10; i++)
+				instances.add(ExperimentScheduler.instanceFile(Integer.toString(i)));
+
+		System.out.println("instance,k,bound,tree,gap,iterations,seconds,removableEdges,removableVertices");
+		for (String instance : instances) {
+			Graph graph = InstanceLoader.load(instance);
+			for (int kDivisor : kDivisors) {
+				int k = graph.numberOfNodes / kDivisor;
+				LagrangianRelaxation relaxation = new LagrangianRelaxation(graph, k);
+				KTree tree = relaxation.solve(seconds, new KTreeHeuristic(graph, k).solve());
+				long bound = relaxation.lowerBound();
+				System.out.println(InstanceLoader.name(instance) + "," + k + "," + bound + ","
+						+ (tree == null ? "" : tree.weight) + ","
+						+ (tree == null ? "" : (double) (tree.weight - bound) / Math.max(tree.weight, 1)) + ","
+						+ relaxation.iterations + "," + relaxation.seconds + "," + relaxation.removableEdges() + ","
+						+ relaxation.removableVertices());
+			}
+		}
+	}
+
+}
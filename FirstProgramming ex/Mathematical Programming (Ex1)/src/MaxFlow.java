@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+// Dinic's max-flow on the arcs of a Graph with the capacities given per arc,
+// used to find minimum root-to-node cuts of a (fractional) solution.
+//
+// The residual arcs of a node v are its out-arcs (forward) followed by its
+// in-arcs (backward); cursor[v] walks this list during a blocking flow.
+// Not thread safe: every thread needs its own instance.
+public class MaxFlow {
+
+	static final double EPSILON = 1e-9;
+
+	private final Graph graph;
+	private final double[] flow;
+	private double[] capacity;
+
+	private final int[] level;
+	private final int[] queue;
+	private final int[] cursor;
+	private final int[] pathArc; // arc used to leave the i-th node of the path
+	private final boolean[] pathForward;
+
+	MaxFlow(Graph graph) {
+		this.graph = graph;
+		flow = new double[graph.numberOfArcs];
+		level = new int[graph.numberOfNodes];
+		queue = new int[graph.numberOfNodes];
+		cursor = new int[graph.numberOfNodes];
+		pathArc = new int[graph.numberOfNodes];
+		pathForward = new boolean[graph.numberOfNodes];
+	}
+
+	// max flow from source to sink, stopping as soon as it reaches limit
+	double maxFlow(double[] arcCapacity, int source, int sink, double limit) {
+		capacity = arcCapacity;
+		Arrays.fill(flow, 0);
+		double total = 0;
+
+		while (total < limit - EPSILON && buildLevels(source, sink)) {
+			Arrays.fill(cursor, 0);
+			double pushed;
+			while (total < limit - EPSILON && (pushed = augment(source, sink, limit - total)) > 0)
+				total += pushed;
+		}
+		if (total < limit - EPSILON)
+			buildLevels(source, sink); // leaves the source side of a minimum cut in level
+		return total;
+	}
+
+	// after a maxFlow that did not reach its limit: is node on the source side of the minimum cut
+	boolean inSourceSide(int node) {
+		return level[node] >= 0;
+	}
+
+	double flow(int arc) {
+		return flow[arc];
+	}
+
+	private double residual(int arc, boolean forward) {
+		return forward ? capacity[arc] - flow[arc] : flow[arc];
+	}
+
+	// BFS on the residual graph, true if the sink is reachable
+	private boolean buildLevels(int source, int sink) {
+		Arrays.fill(level, -1);
+		int head = 0, tail = 0;
+		queue[tail++] = source;
+		level[source] = 0;
+
+		while (head < tail) {
+			int node = queue[head++];
+			for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+				int arc = graph.outArcs[pos];
+				int next = graph.head[arc];
+				if (level[next] < 0 && residual(arc, true) > EPSILON) {
+					level[next] = level[node] + 1;
+					queue[tail++] = next;
+				}
+			}
+			for (int pos = graph.inStart[node]; pos < graph.inStart[node + 1]; pos++) {
+				int arc = graph.inArcs[pos];
+				int next = graph.tail[arc];
+				if (level[next] < 0 && residual(arc, false) > EPSILON) {
+					level[next] = level[node] + 1;
+					queue[tail++] = next;
+				}
+			}
+		}
+		return level[sink] >= 0;
+	}
+
+	// one augmenting path in the level graph, returns the flow pushed on it
+	private double augment(int source, int sink, double limit) {
+		int depth = 0;
+		int node = source;
+
+		while (node != sink) {
+			int outDegree = graph.outDegree(node);
+			int degree = outDegree + graph.inDegree(node);
+			boolean advanced = false;
+
+			while (cursor[node] < degree) {
+				int position = cursor[node];
+				boolean forward = position < outDegree;
+				int arc = forward ? graph.outArcs[graph.outStart[node] + position]
+						: graph.inArcs[graph.inStart[node] + position - outDegree];
+				int next = forward ? graph.head[arc] : graph.tail[arc];
+
+				if (level[next] == level[node] + 1 && residual(arc, forward) > EPSILON) {
+					pathArc[depth] = arc;
+					pathForward[depth] = forward;
+					depth++;
+					node = next;
+					advanced = true;
+					break;
+				}
+				cursor[node]++;
+			}
+
+			if (!advanced) {
+				// dead end: drop the node from the level graph and step back
+				level[node] = -1;
+				if (depth == 0)
+					return 0;
+				depth--;
+				node = pathForward[depth] ? graph.tail[pathArc[depth]] : graph.head[pathArc[depth]];
+				cursor[node]++;
+			}
+		}
+
+		double bottleneck = limit;
+		for (int i = 0; i < depth; i++)
+			bottleneck = Math.min(bottleneck, residual(pathArc[i], pathForward[i]));
+		for (int i = 0; i < depth; i++)
+			flow[pathArc[i]] += pathForward[i] ? bottleneck : -bottleneck;
+		return bottleneck;
+	}
+
+}
@@ -0,0 +1,90 @@
+import java.util.Arrays;
+
+import ilog.concert.IloException;
+
+// Turns a k-tree into a solution of a generated model: the tree is oriented
+// away from its first vertex, entered from the root 0, and the u potentials
+// and flows follow from the orientation.
+public class MipStart {
+
+	// a value for every column of the model, null if the tree cannot be entered from 0
+	static double[] values(Graph graph, SparseModel model, KTree tree) {
+		int n = graph.numberOfNodes;
+		int k = tree.vertices.length;
+		int entry = tree.vertices[0];
+
+		int rootArc = -1;
+		for (int pos = graph.outStart[0]; pos < graph.outStart[1]; pos++)
+			if (graph.head[graph.outArcs[pos]] == entry)
+				rootArc = graph.outArcs[pos];
+		if (rootArc == -1)
+			return null;
+
+		boolean[] inTree = new boolean[graph.numberOfEdges];
+		for (int edge : tree.edges)
+			inTree[edge] = true;
+
+		// BFS from the entry vertex along the tree edges
+		int[] parentArc = new int[n];
+		int[] depth = new int[n];
+		int[] order = new int[k];
+		Arrays.fill(parentArc, -1);
+		parentArc[entry] = rootArc;
+		depth[entry] = 1;
+		order[0] = entry;
+		for (int head = 0, tail = 1; head < tail; head++) {
+			int node = order[head];
+			for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+				int arc = graph.outArcs[pos];
+				int next = graph.head[arc];
+				if (inTree[graph.edgeOf(arc)] && parentArc[next] == -1) {
+					parentArc[next] = arc;
+					depth[next] = depth[node] + 1;
+					order[tail++] = next;
+				}
+			}
+		}
+
+		double[] values = new double[model.numberOfColumns];
+		values[model.yStart] = 1;
+		for (int node : tree.vertices) {
+			values[model.xStart + parentArc[node]] = 1;
+			values[model.yStart + node] = 1;
+			if (model.uStart >= 0)
+				values[model.uStart + node] = depth[node];
+		}
+
+		if (model.fStart >= 0 && model.commodities == null) {
+			// single flow: every arc carries one unit per vertex below it
+			int[] subtree = new int[n];
+			for (int i = k - 1; i >= 0; i--) {
+				int node = order[i];
+				subtree[node]++;
+				values[model.fStart + parentArc[node]] = subtree[node];
+				if (i > 0)
+					subtree[graph.tail[parentArc[node]]] += subtree[node];
+			}
+		} else if (model.fStart >= 0) {
+			// one unit of commodity t on the path from 0 to t
+			for (int block = 0; block < model.commodities.length; block++) {
+				int commodity = model.commodities[block];
+				if (commodity == 0 || parentArc[commodity] == -1)
+					continue;
+				int flow = model.fStart + block * graph.numberOfArcs;
+				for (int node = commodity; node != 0; node = graph.tail[parentArc[node]])
+					values[flow + parentArc[node]] = 1;
+			}
+		}
+		return values;
+	}
+
+	// adds the tree as a MIP start of the loaded model, false if it does not fit it
+	static boolean add(CplexBackend backend, Graph graph, SparseModel model, KTree tree) throws IloException {
+		double[] values = values(graph, model, tree);
+		if (values == null)
+			return false;
+		backend.cplex.addMIPStart(backend.columns, values);
+		return true;
+	}
+
+}
@@ -0,0 +1,7 @@
+// Receives a whole SparseModel at once. Kept free of solver types so that
+// model generation can be run without a solver on the class path.
+public interface ModelBackend {
+
+	void load(SparseModel model) throws Exception;
+
+}
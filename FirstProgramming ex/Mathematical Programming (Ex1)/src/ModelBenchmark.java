@@ -0,0 +1,157 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Times the instance loading and the model generation, with StubBackend in
+// place of CPLEX, so that changes to them can be measured and compared.
+//
+// For every instance and benchmark it reports the throughput (mean and spread
+// over the measured iterations), the bytes allocated per operation and per
+// second by the benchmark thread, and the peak heap while it ran.
+//
+// key=value arguments: instances=1,2 benchmarks=load,MTZ,SCF,MCF k=5
+// warmup=3 iterations=5 seconds=1 (length of an iteration)
+public class ModelBenchmark {
+
+	List<String> instances = new ArrayList<>();
+	List<String> benchmarks = new ArrayList<>(List.of("load", "MTZ", "SCF", "MCF"));
+	int kDivisor = 5;
+	int warmupIterations = 3;
+	int measuredIterations = 5;
+	double iterationSeconds = 1;
+
+	// results are folded in here so that the JIT cannot drop the work
+	static volatile double sink;
+
+	private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	public static void main(String[] args) throws Exception {
+		ModelBenchmark benchmark = new ModelBenchmark();
+		benchmark.configure(args);
+		benchmark.run();
+	}
+
+	void configure(String[] args) {
+		Map<String, String[]> options = ExperimentScheduler.options(args, "instances", "benchmarks", "k", "warmup",
+				"iterations", "seconds");
+		for (Map.Entry<String, String[]> option : options.entrySet()) {
+			String key = option.getKey();
+			String[] values = option.getValue();
+
+			if (key.equals("instances")) {
+				instances.clear();
+				for (String value : values)
+					instances.add(ExperimentScheduler.instanceFile(value));
+			} else if (key.equals("benchmarks"))
+				benchmarks = new ArrayList<>(List.of(values));
+			else if (key.equals("k"))
+				kDivisor = Integer.parseInt(values[0].startsWith("n/") ? values[0].substring(2) : values[0]);
+			else if (key.equals("warmup"))
+				warmupIterations = Integer.parseInt(values[0]);
+			else if (key.equals("iterations"))
+				measuredIterations = Integer.parseInt(values[0]);
+			else if (key.equals("seconds"))
+				iterationSeconds = Double.parseDouble(values[0]);
+		}
+
+		if (instances.isEmpty())
+			for (int i = 1; i <= 10; i++)
+				instances.add(ExperimentScheduler.instanceFile(Integer.toString(i)));
+	}
+
+	void run() throws Exception {
+		System.out.println(String.format("%-8s %-5s %8s %8s %12s %14s %12s %12s %12s", "instance", "bench", "nodes",
+				"arcs", "ops/s", "+-", "MB/op", "alloc MB/s", "peak heap MB"));
+		for (String file : instances) {
+			Graph graph = InstanceLoader.load(file);
+			int k = graph.numberOfNodes / kDivisor;
+			for (String name : benchmarks) {
+				Operation operation = operation(name, file, graph, k);
+				String line = String.format("%-8s %-5s %8d %8d ", InstanceLoader.name(file), name, graph.numberOfNodes,
+						graph.numberOfArcs);
+				try {
+					System.out.println(line + measure(operation));
+				} catch (IllegalArgumentException | OutOfMemoryError e) {
+					// MCF does not fit on the largest instances
+					System.out.println(line + "skipped: " + e.getMessage());
+				}
+			}
+		}
+	}
+
+	interface Operation {
+		double run() throws Exception;
+	}
+
+	private static Operation operation(String name, String file, Graph graph, int k) {
+		if (name.equals("load"))
+			return () -> InstanceLoader.load(file).numberOfArcs;
+		Formulation formulation = Formulation.valueOf(name.toUpperCase());
+		return () -> {
+			StubBackend backend = new StubBackend();
+			backend.load(formulation.generate(graph, k));
+			return backend.checksum;
+		};
+	}
+
+	private String measure(Operation operation) throws Exception {
+		for (int i = 0; i < warmupIterations; i++)
+			iteration(operation);
+
+		System.gc();
+		List<MemoryPoolMXBean> heap = new ArrayList<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				heap.add(pool);
+			}
+
+		long thread = Thread.currentThread().getId();
+		double[] throughput = new double[measuredIterations];
+		long operations = 0;
+		long nanos = 0;
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < measuredIterations; i++) {
+			long start = System.nanoTime();
+			long count = iteration(operation);
+			long elapsed = System.nanoTime() - start;
+			throughput[i] = count * 1e9 / elapsed;
+			operations += count;
+			nanos += elapsed;
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+		// the pools do not peak at the same time, so this is an upper bound
+		long peak = 0;
+		for (MemoryPoolMXBean pool : heap)
+			peak += pool.getPeakUsage().getUsed();
+
+		double mean = 0;
+		for (double value : throughput)
+			mean += value / measuredIterations;
+		double variance = 0;
+		for (double value : throughput)
+			variance += (value - mean) * (value - mean) / Math.max(measuredIterations - 1, 1);
+
+		return String.format("%12.3f %14.3f %12.3f %12.1f %12.1f", mean, Math.sqrt(variance),
+				allocated / 1e6 / operations, allocated / 1e6 / (nanos / 1e9), peak / 1e6);
+	}
+
+	// runs the operation for at least iterationSeconds, returns how many times
+	private long iteration(Operation operation) throws Exception {
+		long end = System.nanoTime() + (long) (iterationSeconds * 1e9);
+		long count = 0;
+		double result = 0;
+		do {
+			result += operation.run();
+			count++;
+		} while (System.nanoTime() < end);
+		sink += result;
+		return count;
+	}
+
+}
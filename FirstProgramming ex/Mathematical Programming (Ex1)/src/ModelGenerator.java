@@ -0,0 +1,303 @@
+import java.util.Arrays;
+import java.util.Set;
+
+// Emits the MTZ, SCF, MCF and branch-and-cut formulations of the k-cardinality
+// tree problem into a SparseModel. Constraint numbers follow the ones used in Main.
+//
+// Column layout: x[arc] at xStart + arc, y[node] at yStart + node, u[node] at
+// uStart + node; in SCF f[arc] at fStart + arc, in MCF the flows of
+// commodities[i] at fStart + i * numberOfArcs + arc.
+//
+// Every generator also takes the model to emit into, which may be a
+// ModelWriter streaming the rows to a file instead of keeping them, and the
+// Strengthening inequalities to add.
+public class ModelGenerator {
+
+	static SparseModel mtz(Graph graph, int k) {
+		int n = graph.numberOfNodes;
+		int arcs = graph.numberOfArcs;
+		return mtz(graph, k, new SparseModel(arcs + 2 * n, 3 * arcs + 3 * n, 8 * arcs + 6 * n), Strengthening.NONE);
+	}
+
+	static SparseModel mtz(Graph graph, int k, SparseModel model, Set<Strengthening> strengthening) {
+		int n = graph.numberOfNodes;
+		int arcs = graph.numberOfArcs;
+		int bigM = k;
+
+		addArcAndNodeVariables(graph, model);
+		model.beginFamily("u");
+		model.uStart = model.addColumns(n, 0.0, k, SparseModel.CONTINUOUS);
+		addDegreeConstraints(graph, k, model, strengthening); // constraints (2) - (6)
+
+		// constraint (7)
+		model.beginFamily("(7)");
+		for (int node = 1; node < n; node++) {
+			model.addTerm(model.uStart + node, 1);
+			model.addTerm(model.yStart + node, -k);
+			model.addRow(SparseModel.LESS_EQUAL, 0);
+
+			model.addTerm(model.uStart + node, 1);
+			model.addTerm(model.yStart + node, -1);
+			model.addRow(SparseModel.GREATER_EQUAL, 0);
+		}
+		// end constraint (7)
+
+		// constraint (8): u_i + x_ij <= u_j + bigM (1 - x_ij); lifted, x_ji = 1
+		// also forces u_i = u_j + 1
+		boolean lifted = strengthening.contains(Strengthening.LIFTED_MTZ);
+		model.beginFamily(lifted ? "(8) lifted" : "(8)");
+		for (int arc = 0; arc < arcs; arc++) {
+			if (graph.reverse[arc] == -1)
+				continue;
+			model.addTerm(model.uStart + graph.tail[arc], 1);
+			model.addTerm(model.uStart + graph.head[arc], -1);
+			model.addTerm(model.xStart + arc, 1 + bigM);
+			if (lifted)
+				model.addTerm(model.xStart + graph.reverse[arc], bigM - 1);
+			model.addRow(SparseModel.LESS_EQUAL, bigM);
+		}
+		// end constraint (8)
+
+		model.beginFamily("(9) (10)");
+		model.addTerm(model.yStart, 1);
+		model.addRow(SparseModel.EQUAL, 1); // constraint (9)
+		model.addTerm(model.uStart, 1);
+		model.addRow(SparseModel.EQUAL, 0); // constraint (10)
+
+		model.trim();
+		return model;
+	}
+
+	static SparseModel scf(Graph graph, int k) {
+		int n = graph.numberOfNodes;
+		int arcs = graph.numberOfArcs;
+		return scf(graph, k, new SparseModel(2 * arcs + n, 2 * arcs + 2 * n, 9 * arcs + 2 * n), Strengthening.NONE);
+	}
+
+	static SparseModel scf(Graph graph, int k, SparseModel model, Set<Strengthening> strengthening) {
+		int n = graph.numberOfNodes;
+		int arcs = graph.numberOfArcs;
+
+		addArcAndNodeVariables(graph, model);
+		model.beginFamily("f");
+		model.fStart = model.addColumns(arcs, 0.0, k, SparseModel.CONTINUOUS);
+		addDegreeConstraints(graph, k, model, strengthening); // constraints (14) - (18)
+
+		// constraint (19)
+		model.beginFamily("(19)");
+		for (int pos = graph.outStart[0]; pos < graph.outStart[1]; pos++)
+			model.addTerm(model.fStart + graph.outArcs[pos], 1);
+		model.addRow(SparseModel.EQUAL, k);
+		// end constraint (19)
+
+		// constraint (20)
+		model.beginFamily("(20)");
+		for (int node = 1; node < n; node++) {
+			for (int pos = graph.inStart[node]; pos < graph.inStart[node + 1]; pos++)
+				model.addTerm(model.fStart + graph.inArcs[pos], 1);
+			for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++)
+				model.addTerm(model.fStart + graph.outArcs[pos], -1);
+			model.addTerm(model.yStart + node, -1);
+			model.addRow(SparseModel.EQUAL, 0);
+		}
+		// end constraint (20)
+
+		// constraint (21), below the root an arc carries at most k - 1 units
+		boolean capacity = strengthening.contains(Strengthening.FLOW_CAPACITY);
+		model.beginFamily("(21)");
+		for (int arc = 0; arc < arcs; arc++) {
+			model.addTerm(model.fStart + arc, 1);
+			model.addTerm(model.xStart + arc, capacity && graph.reverse[arc] != -1 ? 1 - k : -k);
+			model.addRow(SparseModel.LESS_EQUAL, 0);
+		}
+		// end constraint (21)
+
+		model.beginFamily("(22)");
+		model.addTerm(model.yStart, 1);
+		model.addRow(SparseModel.EQUAL, 1); // constraint (22)
+
+		model.trim();
+		return model;
+	}
+
+	static SparseModel mcf(Graph graph, int k) {
+		checkMcfSize(graph);
+		return mcf(graph, k, allCommodities(graph.numberOfNodes));
+	}
+
+	static void checkMcfSize(Graph graph) {
+		long flows = (long) graph.numberOfNodes * graph.numberOfArcs;
+		if (4 * flows + 4 * graph.numberOfArcs > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("MCF with " + flows + " flow variables does not fit a sparse model");
+	}
+
+	// MCF with the flows of the given commodities only
+	static SparseModel mcf(Graph graph, int k, int[] commodities) {
+		int n = graph.numberOfNodes;
+		int arcs = graph.numberOfArcs;
+		int flows = commodities.length * arcs;
+		return mcf(graph, k, commodities, new SparseModel(flows + arcs + n,
+				commodities.length * (n + arcs) + 2 * n + arcs, 4 * flows + 4 * arcs + 4 * n), Strengthening.NONE);
+	}
+
+	static SparseModel mcf(Graph graph, int k, int[] commodities, SparseModel model,
+			Set<Strengthening> strengthening) {
+		addArcAndNodeVariables(graph, model);
+		model.commodities = new int[0];
+		addDegreeConstraints(graph, k, model, strengthening); // constraints (26) - (30)
+
+		model.beginFamily("(33)");
+		model.addTerm(model.yStart, 1);
+		model.addRow(SparseModel.EQUAL, 1); // constraint (33)
+
+		for (int commodity : commodities)
+			addCommodity(graph, model, commodity);
+
+		model.trim();
+		return model;
+	}
+
+	// appends the flow variables of a commodity and its rows (31) and (32)
+	static void addCommodity(Graph graph, SparseModel model, int commodity) {
+		int n = graph.numberOfNodes;
+		int arcs = graph.numberOfArcs;
+		model.beginFamily("f");
+		int flow = model.addColumns(arcs, 0.0, 1.0, SparseModel.CONTINUOUS);
+		if (model.fStart < 0)
+			model.fStart = flow;
+		model.commodities = Arrays.copyOf(model.commodities, model.commodities.length + 1);
+		model.commodities[model.commodities.length - 1] = commodity;
+
+		// constraint (31)
+		model.beginFamily("(31)");
+		for (int node = 0; node < n; node++) {
+			for (int pos = graph.inStart[node]; pos < graph.inStart[node + 1]; pos++)
+				model.addTerm(flow + graph.inArcs[pos], 1);
+			for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++)
+				model.addTerm(flow + graph.outArcs[pos], -1);
+
+			if (node == 0 && commodity != 0)
+				model.addTerm(model.yStart + commodity, 1);
+			else if (node == commodity && commodity != 0)
+				model.addTerm(model.yStart + node, -1);
+			model.addRow(SparseModel.EQUAL, 0);
+		}
+		// end constraint (31)
+
+		// constraint (32)
+		model.beginFamily("(32)");
+		for (int arc = 0; arc < arcs; arc++) {
+			model.addTerm(flow + arc, 1);
+			model.addTerm(model.xStart + arc, -1);
+			model.addRow(SparseModel.LESS_EQUAL, 0);
+		}
+		// end constraint (32)
+		model.endFamily();
+	}
+
+	// only x, y and the constraints (2) - (6): connectivity is left to the cuts
+	// added by BranchAndCut during the search
+	static SparseModel bc(Graph graph, int k) {
+		int n = graph.numberOfNodes;
+		int arcs = graph.numberOfArcs;
+		return bc(graph, k, new SparseModel(arcs + n, arcs / 2 + n + 4, 4 * arcs + 2 * n), Strengthening.NONE);
+	}
+
+	static SparseModel bc(Graph graph, int k, SparseModel model, Set<Strengthening> strengthening) {
+		addArcAndNodeVariables(graph, model);
+		addDegreeConstraints(graph, k, model, strengthening);
+
+		model.beginFamily("y_0");
+		model.addTerm(model.yStart, 1);
+		model.addRow(SparseModel.EQUAL, 1); // y_0 = 1
+
+		model.trim();
+		return model;
+	}
+
+	static int[] allCommodities(int numberOfNodes) {
+		int[] commodities = new int[numberOfNodes];
+		for (int commodity = 0; commodity < numberOfNodes; commodity++)
+			commodities[commodity] = commodity;
+		return commodities;
+	}
+
+	private static void addArcAndNodeVariables(Graph graph, SparseModel model) {
+		model.beginFamily("x y");
+		model.xStart = model.addColumns(graph.numberOfArcs, 0.0, 1.0, SparseModel.BINARY);
+		model.yStart = model.addColumns(graph.numberOfNodes, 0.0, 1.0, SparseModel.BINARY);
+		for (int arc = 0; arc < graph.numberOfArcs; arc++)
+			model.setObjective(model.xStart + arc, graph.weight[arc]); // objective function
+	}
+
+	// the rows shared by all the formulations: (2) - (6) in MTZ numbering, and
+	// the linking inequalities
+	private static void addDegreeConstraints(Graph graph, int k, SparseModel model,
+			Set<Strengthening> strengthening) {
+		int n = graph.numberOfNodes;
+		model.beginFamily("(2) - (6)");
+
+		for (int node = 0; node < n; node++)
+			model.addTerm(model.yStart + node, 1);
+		model.addRow(SparseModel.EQUAL, k + 1); // constraint (2)
+
+		for (int arc = 0; arc < graph.numberOfArcs; arc++)
+			model.addTerm(model.xStart + arc, 1);
+		model.addRow(SparseModel.EQUAL, k); // constraint (3)
+
+		// constraint (4)
+		for (int node = 1; node < n; node++) {
+			for (int pos = graph.inStart[node]; pos < graph.inStart[node + 1]; pos++)
+				model.addTerm(model.xStart + graph.inArcs[pos], 1);
+			model.addTerm(model.yStart + node, -1);
+			model.addRow(SparseModel.EQUAL, 0);
+		}
+		// end constraint (4)
+
+		// constraint (5)
+		for (int pos = graph.outStart[0]; pos < graph.outStart[1]; pos++)
+			model.addTerm(model.xStart + graph.outArcs[pos], 1);
+		model.addRow(SparseModel.EQUAL, 1);
+		// end constraint (5)
+
+		// constraint (6)
+		for (int edge = 0; edge < graph.numberOfEdges; edge++) {
+			int backward = graph.reverse[edge];
+			if (backward == -1)
+				continue;
+			model.addTerm(model.yStart + graph.tail[edge], 1);
+			model.addTerm(model.yStart + graph.head[edge], 1);
+			model.addTerm(model.xStart + edge, -2);
+			model.addTerm(model.xStart + backward, -2);
+			model.addRow(SparseModel.GREATER_EQUAL, 0);
+		}
+		// end constraint (6)
+
+		if (strengthening.contains(Strengthening.ARC_LINKING)) {
+			model.beginFamily("x <= y");
+			for (int arc = 0; arc < graph.numberOfArcs; arc++) {
+				if (graph.reverse[arc] == -1)
+					continue;
+				model.addTerm(model.xStart + arc, 1);
+				model.addTerm(model.yStart + graph.tail[arc], -1);
+				model.addRow(SparseModel.LESS_EQUAL, 0);
+			}
+		}
+
+		if (strengthening.contains(Strengthening.EDGE_LINKING)) {
+			model.beginFamily("x + x <= y");
+			for (int edge = 0; edge < graph.numberOfEdges; edge++) {
+				int backward = graph.reverse[edge];
+				if (backward == -1)
+					continue;
+				for (int node : new int[] { graph.tail[edge], graph.head[edge] }) {
+					model.addTerm(model.xStart + edge, 1);
+					model.addTerm(model.xStart + backward, 1);
+					model.addTerm(model.yStart + node, -1);
+					model.addRow(SparseModel.LESS_EQUAL, 0);
+				}
+			}
+		}
+	}
+
+}
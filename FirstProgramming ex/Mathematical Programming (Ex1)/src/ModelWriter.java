@@ -0,0 +1,444 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+// Streams a model to an LP or free MPS file, gzip-compressed when the name
+// ends in .gz, without building it: a ModelWriter is a SparseModel that writes
+// what the generators emit instead of storing it, so the size of the model is
+// not limited by the memory.
+//
+// Columns are named as in the Concert models of MainVecchio: x_{i,j}, y<i>,
+// u<i>, f_{i,j} and, in MCF, f_{i,j,c} for commodity c; rows are c1, c2, ...
+// in the order they are emitted.
+//
+// LP is written in one pass that keeps only the blocks of columns. MPS lists
+// the matrix by column, so the model is generated several times: a first pass
+// writes the ROWS section and counts the nonzeros of each chunk of columns,
+// each of the next passes keeps only the entries of as many chunks as fit
+// MAX_ENTRIES and writes their COLUMNS lines, and a last pass writes the RHS.
+//
+// key=value arguments: instance=1 k=(n/5) formulation=SCF file=model.lp
+// (or .mps, .lp.gz, .mps.gz)
+public class ModelWriter extends SparseModel {
+
+	static final int CHUNK_COLUMNS = 1 << 12;
+	static final int MAX_ENTRIES = 1 << 22;
+	static final int TERMS_PER_LINE = 8;
+
+	// columns added by one call of addColumns
+	static class Block {
+		final int first;
+		final int count;
+		final double lb;
+		final double ub;
+		final char type;
+
+		Block(int first, int count, double lb, double ub, char type) {
+			this.first = first;
+			this.count = count;
+			this.lb = lb;
+			this.ub = ub;
+			this.type = type;
+		}
+	}
+
+	final Graph graph;
+	final Writer out;
+	final List<Block> blocks = new ArrayList<>();
+
+	ModelWriter(Graph graph, Writer out) {
+		super(0, 0, 0);
+		this.graph = graph;
+		this.out = out;
+	}
+
+	public static void main(String[] args) throws IOException {
+		String instance = ExperimentScheduler.instanceFile("1");
+		int k = -1;
+		Formulation formulation = Formulation.SCF;
+		String file = "model.lp";
+		Map<String, String[]> options = ExperimentScheduler.options(args, "instance", "k", "formulation", "file");
+		for (Map.Entry<String, String[]> option : options.entrySet()) {
+			String key = option.getKey();
+			String value = String.join(",", option.getValue());
+
+			if (key.equals("instance"))
+				instance = ExperimentScheduler.instanceFile(value);
+			else if (key.equals("k"))
+				k = Integer.parseInt(value);
+			else if (key.equals("formulation"))
+				formulation = Formulation.valueOf(value.toUpperCase());
+			else if (key.equals("file"))
+				file = value;
+		}
+
+		Graph graph = InstanceLoader.load(instance);
+		if (k < 0)
+			k = graph.numberOfNodes / 5;
+		long start = System.nanoTime();
+		ModelWriter written = export(formulation, graph, k, file);
+		System.out.println(InstanceLoader.name(instance) + " k = " + k + " " + formulation + " -> " + file + "     "
+				+ written + "     " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+	// writes the model and returns the writer of its first pass, which counted it
+	static ModelWriter export(Formulation formulation, Graph graph, int k, String file) throws IOException {
+		if (formulation.columns(graph.numberOfNodes, graph.numberOfArcs) > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(formulation + " has more columns than can be numbered");
+		boolean mps = file.endsWith(".mps") || file.endsWith(".mps.gz");
+		OutputStream stream = new FileOutputStream(file);
+		if (file.endsWith(".gz"))
+			stream = new GZIPOutputStream(stream, 1 << 16);
+		try (Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.US_ASCII), 1 << 16)) {
+			if (!mps) {
+				Lp lp = new Lp(graph, out);
+				formulation.generate(graph, k, lp);
+				lp.finish();
+				return lp;
+			}
+
+			MpsRows rows = new MpsRows(graph, out);
+			formulation.generate(graph, k, rows);
+			out.write("COLUMNS\n");
+			boolean integer = false;
+			int chunks = (rows.numberOfColumns + CHUNK_COLUMNS - 1) / CHUNK_COLUMNS;
+			for (int chunk = 0; chunk < chunks;) {
+				long entries = 0;
+				int last = chunk;
+				while (last < chunks && (last == chunk || entries + rows.chunkNonZeros[last] <= MAX_ENTRIES))
+					entries += rows.chunkNonZeros[last++];
+				MpsColumns columns = new MpsColumns(graph, out, chunk * CHUNK_COLUMNS,
+						Math.min(last * CHUNK_COLUMNS, rows.numberOfColumns), (int) entries);
+				formulation.generate(graph, k, columns);
+				integer = columns.finish(integer);
+				chunk = last;
+			}
+			if (integer)
+				out.write(" MARKER 'MARKER' 'INTEND'\n");
+			out.write("RHS\n");
+			formulation.generate(graph, k, new MpsRhs(graph, out));
+			rows.finish();
+			return rows;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	// what the subclasses write for each emitted element
+
+	void objective(int column, double coefficient) throws IOException {
+	}
+
+	void term(int column, double coefficient) throws IOException {
+	}
+
+	void row(char rowSense, double rightHandSide) throws IOException {
+	}
+
+	@Override
+	int addColumns(int count, double lb, double ub, char columnType) {
+		blocks.add(new Block(numberOfColumns, count, lb, ub, columnType));
+		int first = numberOfColumns;
+		numberOfColumns += count;
+		return first;
+	}
+
+	@Override
+	void setObjective(int column, double coefficient) {
+		try {
+			objective(column, coefficient);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	void addTerm(int column, double coefficient) {
+		try {
+			term(column, coefficient);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		numberOfNonZeros++;
+	}
+
+	@Override
+	int addRow(char rowSense, double rightHandSide) {
+		try {
+			row(rowSense, rightHandSide);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return numberOfRows++;
+	}
+
+	// nothing is stored, there is nothing to trim
+	@Override
+	void trim() {
+		endFamily();
+	}
+
+	Block block(int column) {
+		int low = 0;
+		int high = blocks.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (blocks.get(middle).first <= column)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+		return blocks.get(low);
+	}
+
+	String columnName(int column) {
+		int arcs = graph.numberOfArcs;
+		if (column >= xStart && column < xStart + arcs)
+			return "x_{" + graph.tail[column - xStart] + "," + graph.head[column - xStart] + "}";
+		if (column >= yStart && column < yStart + graph.numberOfNodes)
+			return "y" + (column - yStart);
+		if (uStart >= 0 && column >= uStart && column < uStart + graph.numberOfNodes)
+			return "u" + (column - uStart);
+		int arc = (column - fStart) % arcs;
+		if (commodities == null)
+			return "f_{" + graph.tail[arc] + "," + graph.head[arc] + "}";
+		return "f_{" + graph.tail[arc] + "," + graph.head[arc] + "," + commodities[(column - fStart) / arcs] + "}";
+	}
+
+	static String rowName(int row) {
+		return "c" + (row + 1);
+	}
+
+	static String number(double value) {
+		if (value == Math.rint(value) && Math.abs(value) < 1e15)
+			return Long.toString((long) value);
+		return Double.toString(value);
+	}
+
+	// the objective, then every row as it is closed, then the bounds and types
+	static class Lp extends ModelWriter {
+		private boolean constraints;
+		private int terms;
+
+		Lp(Graph graph, Writer out) throws IOException {
+			super(graph, out);
+			out.write("\\Problem name: k-cardinality tree\n\nMinimize\n obj:");
+		}
+
+		@Override
+		void objective(int column, double coefficient) throws IOException {
+			if (constraints)
+				throw new IllegalStateException("objective of column " + column + " set after the first row");
+			if (coefficient != 0)
+				writeTerm(column, coefficient);
+		}
+
+		@Override
+		void term(int column, double coefficient) throws IOException {
+			startConstraints();
+			if (terms == 0)
+				out.write(" " + rowName(numberOfRows) + ":");
+			writeTerm(column, coefficient);
+		}
+
+		@Override
+		void row(char rowSense, double rightHandSide) throws IOException {
+			startConstraints();
+			if (terms == 0)
+				out.write(" " + rowName(numberOfRows) + ": 0 " + columnName(0));
+			String relation = rowSense == EQUAL ? " = " : rowSense == LESS_EQUAL ? " <= " : " >= ";
+			out.write(relation + number(rightHandSide) + "\n");
+			terms = 0;
+		}
+
+		private void startConstraints() throws IOException {
+			if (constraints)
+				return;
+			out.write("\nSubject To\n");
+			constraints = true;
+			terms = 0;
+		}
+
+		private void writeTerm(int column, double coefficient) throws IOException {
+			if (terms > 0 && terms % TERMS_PER_LINE == 0)
+				out.write("\n     ");
+			out.write(coefficient < 0 ? " - " : terms > 0 ? " + " : " ");
+			if (Math.abs(coefficient) != 1)
+				out.write(number(Math.abs(coefficient)) + " ");
+			out.write(columnName(column));
+			terms++;
+		}
+
+		void finish() throws IOException {
+			startConstraints();
+			out.write("Bounds\n");
+			for (Block block : blocks)
+				if (block.type != BINARY && !(block.lb == 0 && block.ub == Double.POSITIVE_INFINITY))
+					for (int column = block.first; column < block.first + block.count; column++)
+						out.write(" " + bound(block.lb) + " <= " + columnName(column) + " <= " + bound(block.ub) + "\n");
+			writeNames("Generals", INTEGER);
+			writeNames("Binaries", BINARY);
+			out.write("End\n");
+		}
+
+		private void writeNames(String section, char columnType) throws IOException {
+			boolean header = false;
+			int names = 0;
+			for (Block block : blocks)
+				if (block.type == columnType)
+					for (int column = block.first; column < block.first + block.count; column++) {
+						if (!header)
+							out.write(section + "\n");
+						header = true;
+						out.write(" " + columnName(column) + (++names % TERMS_PER_LINE == 0 ? "\n" : ""));
+					}
+			if (names % TERMS_PER_LINE != 0)
+				out.write("\n");
+		}
+
+		private static String bound(double value) {
+			return value == Double.POSITIVE_INFINITY ? "+inf" : value == Double.NEGATIVE_INFINITY ? "-inf" : number(value);
+		}
+	}
+
+	// first MPS pass: the ROWS section and the nonzeros of every chunk of columns
+	static class MpsRows extends ModelWriter {
+		long[] chunkNonZeros = new long[16];
+
+		MpsRows(Graph graph, Writer out) throws IOException {
+			super(graph, out);
+			out.write("NAME k-cardinality-tree\nROWS\n N obj\n");
+		}
+
+		@Override
+		void term(int column, double coefficient) {
+			chunkNonZeros[column / CHUNK_COLUMNS]++;
+		}
+
+		@Override
+		void row(char rowSense, double rightHandSide) throws IOException {
+			out.write(" " + rowSense + " " + rowName(numberOfRows) + "\n");
+		}
+
+		@Override
+		int addColumns(int count, double lb, double ub, char columnType) {
+			int first = super.addColumns(count, lb, ub, columnType);
+			int chunks = (numberOfColumns + CHUNK_COLUMNS - 1) / CHUNK_COLUMNS;
+			if (chunks > chunkNonZeros.length)
+				chunkNonZeros = Arrays.copyOf(chunkNonZeros, Math.max(chunks, chunkNonZeros.length * 2));
+			return first;
+		}
+
+		// the BOUNDS section from the blocks of columns, and the end of the file
+		void finish() throws IOException {
+			out.write("BOUNDS\n");
+			for (Block block : blocks)
+				for (int column = block.first; column < block.first + block.count; column++) {
+					String name = columnName(column);
+					if (block.type == BINARY && block.lb == 0 && block.ub == 1) {
+						out.write(" BV BND " + name + "\n");
+						continue;
+					}
+					if (block.lb == Double.NEGATIVE_INFINITY)
+						out.write(" MI BND " + name + "\n");
+					else if (block.lb != 0)
+						out.write(" LO BND " + name + " " + number(block.lb) + "\n");
+					if (block.ub != Double.POSITIVE_INFINITY)
+						out.write(" UP BND " + name + " " + number(block.ub) + "\n");
+					else if (block.type != CONTINUOUS)
+						out.write(" PL BND " + name + "\n");
+				}
+			out.write("ENDATA\n");
+		}
+	}
+
+	// one MPS pass per range of columns: the entries of [first, last) sorted by column
+	static class MpsColumns extends ModelWriter {
+		final int first;
+		final int last;
+		final int[] entryColumn;
+		final int[] entryRow;
+		final double[] entryValue;
+		final double[] objectiveValue;
+		private int entries;
+
+		MpsColumns(Graph graph, Writer out, int first, int last, int capacity) {
+			super(graph, out);
+			this.first = first;
+			this.last = last;
+			entryColumn = new int[capacity];
+			entryRow = new int[capacity];
+			entryValue = new double[capacity];
+			objectiveValue = new double[last - first];
+		}
+
+		@Override
+		void objective(int column, double coefficient) {
+			if (column >= first && column < last)
+				objectiveValue[column - first] = coefficient;
+		}
+
+		@Override
+		void term(int column, double coefficient) {
+			if (column < first || column >= last)
+				return;
+			entryColumn[entries] = column;
+			entryRow[entries] = numberOfRows;
+			entryValue[entries] = coefficient;
+			entries++;
+		}
+
+		// writes the COLUMNS lines of the range, opening and closing the integer
+		// markers from the given state; returns the state at the end
+		boolean finish(boolean integer) throws IOException {
+			int[] start = new int[last - first + 1];
+			for (int i = 0; i < entries; i++)
+				start[entryColumn[i] - first + 1]++;
+			for (int i = 0; i < last - first; i++)
+				start[i + 1] += start[i];
+			int[] order = new int[entries];
+			int[] next = Arrays.copyOf(start, last - first);
+			for (int i = 0; i < entries; i++)
+				order[next[entryColumn[i] - first]++] = i;
+
+			for (int column = first; column < last; column++) {
+				boolean integerColumn = block(column).type != CONTINUOUS;
+				if (integerColumn != integer)
+					out.write(integerColumn ? " MARKER 'MARKER' 'INTORG'\n" : " MARKER 'MARKER' 'INTEND'\n");
+				integer = integerColumn;
+
+				String name = columnName(column);
+				double cost = objectiveValue[column - first];
+				if (cost != 0 || start[column - first] == start[column - first + 1])
+					out.write(" " + name + " obj " + number(cost) + "\n");
+				for (int i = start[column - first]; i < start[column - first + 1]; i++)
+					out.write(" " + name + " " + rowName(entryRow[order[i]]) + " " + number(entryValue[order[i]]) + "\n");
+			}
+			return integer;
+		}
+	}
+
+	// last MPS pass: the nonzero right hand sides
+	static class MpsRhs extends ModelWriter {
+		MpsRhs(Graph graph, Writer out) {
+			super(graph, out);
+		}
+
+		@Override
+		void row(char rowSense, double rightHandSide) throws IOException {
+			if (rightHandSide != 0)
+				out.write(" RHS " + rowName(numberOfRows) + " " + number(rightHandSide) + "\n");
+		}
+	}
+
+}
@@ -0,0 +1,660 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// LP relaxation bounds without CPLEX: a primal-dual hybrid gradient method in
+// the style of PDLP, on an operator that only multiplies by the constraint
+// matrix K and its transpose.
+//
+// The rows are turned into K x >= b or K x = b by flipping the <= ones, then
+// scaled by ten Ruiz equilibration passes and one Pock-Chambolle pass. The
+// step is constant, 1 / ||K|| estimated by power iteration, split between
+// the primal and the dual by the primal weight, which is rebalanced at every
+// restart. Every CHECK_INTERVAL iterations the KKT error of the current point
+// and of the average since the last restart are compared, and the search
+// restarts from the better one when it has cut the error enough.
+//
+// All the columns of the formulations are bounded, so every dual point gives
+// a valid lower bound: the best one seen is the bound reported, whether the
+// method converged or ran out of time.
+//
+// MTZ, SCF and BC use the SparseModel in CSR with its transpose. MCF uses
+// McfOperator, which computes the products of the commodity blocks from the
+// graph arrays without storing them; the vectors of n * arcs flows are still
+// stored, about ten per column and eight per row.
+//
+// key=value arguments: instances=1,2 formulations=MTZ,SCF,MCF k=5,2 (n / k)
+// seconds=600 (per bound) threads=(all cores) tolerance=1e-4
+public class PdlpSolver {
+
+	static final int RUIZ_ITERATIONS = 10;
+	static final int POWER_ITERATIONS = 30;
+	static final int CHECK_INTERVAL = 64;
+	static final int CHUNK = 1 << 14;
+
+	// what the solver needs of the constraint matrix
+	interface Operator {
+		int rows();
+
+		int columns();
+
+		// out = K x
+		void multiply(double[] x, double[] out);
+
+		// out = K^T y
+		void multiplyTranspose(double[] y, double[] out);
+
+		// every nonzero as (row, column, value), in any order
+		void forEachEntry(EntryVisitor visitor);
+
+		// objective, column bounds, right hand sides and senses
+		void data(double[] objective, double[] lower, double[] upper, double[] rhs, char[] sense);
+	}
+
+	interface EntryVisitor {
+		void visit(int row, int column, double value);
+	}
+
+	final Operator operator;
+	final int rows;
+	final int columns;
+
+	// scaled problem: K~ = R K C, c~ = C c, b~ = R b, bounds divided by C; the
+	// signs of the <= rows are in R
+	final double[] rowScale;
+	final double[] columnScale;
+	final double[] objective;
+	final double[] lower;
+	final double[] upper;
+	final double[] rhs;
+	final boolean[] equality;
+
+	// outcome of solve()
+	double bound = Double.NEGATIVE_INFINITY;
+	double primalObjective = Double.NaN;
+	double primalResidual = Double.NaN;
+	double dualResidual = Double.NaN;
+	int iterations;
+	int restarts;
+	boolean converged;
+
+	private final double[] columnScratch;
+
+	PdlpSolver(Operator operator) {
+		this.operator = operator;
+		rows = operator.rows();
+		columns = operator.columns();
+		objective = new double[columns];
+		lower = new double[columns];
+		upper = new double[columns];
+		rhs = new double[rows];
+		char[] sense = new char[rows];
+		operator.data(objective, lower, upper, rhs, sense);
+
+		rowScale = new double[rows];
+		columnScale = new double[columns];
+		equality = new boolean[rows];
+		for (int row = 0; row < rows; row++) {
+			rowScale[row] = sense[row] == SparseModel.LESS_EQUAL ? -1 : 1;
+			equality[row] = sense[row] == SparseModel.EQUAL;
+		}
+		Arrays.fill(columnScale, 1);
+		columnScratch = new double[columns];
+		scale();
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> instances = new ArrayList<>();
+		List<Formulation> formulations = new ArrayList<>(List.of(Formulation.MTZ, Formulation.SCF, Formulation.MCF));
+		int[] kDivisors = { 5, 2 };
+		double seconds = 600;
+		int threads = Runtime.getRuntime().availableProcessors();
+		double tolerance = 1e-4;
+		Map<String, String[]> options = ExperimentScheduler.options(args, "instances", "formulations", "k", "seconds",
+				"threads", "tolerance");
+		for (Map.Entry<String, String[]> option : options.entrySet()) {
+			String key = option.getKey();
+			String[] values = option.getValue();
+
+			if (key.equals("instances"))
+				for (String value : values)
+					instances.add(ExperimentScheduler.instanceFile(value));
+			else if (key.equals("formulations")) {
+				formulations.clear();
+				for (String value : values)
+					formulations.add(Formulation.valueOf(value.toUpperCase()));
+			} else if (key.equals("k")) {
+				kDivisors = new int[values.length];
+				for (int i = 0; i < values.length; i++)
+					kDivisors[i] = Integer.parseInt(values[i]);
+			} else if (key.equals("seconds"))
+				seconds = Double.parseDouble(values[0]);
+			else if (key.equals("threads"))
+				threads = Integer.parseInt(values[0]);
+			else if (key.equals("tolerance"))
+				tolerance = Double.parseDouble(values[0]);
+		}
+		if (instances.isEmpty())
+			instances.add(ExperimentScheduler.instanceFile("1"));
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		System.out.println("instance,k,formulation,rows,columns,bound,primal,primalResidual,dualResidual,"
+				+ "iterations,restarts,seconds,converged");
+		for (String instance : instances) {
+			Graph graph = InstanceLoader.load(instance);
+			for (int kDivisor : kDivisors)
+				for (Formulation formulation : formulations) {
+					int k = graph.numberOfNodes / kDivisor;
+					long start = System.nanoTime();
+					Operator operator = formulation == Formulation.MCF ? new McfOperator(graph, k)
+							: new CsrOperator(formulation.generate(graph, k));
+					PdlpSolver solver = new PdlpSolver(operator);
+					double limit = seconds;
+					double epsilon = tolerance;
+					try {
+						pool.submit(() -> solver.solve(limit, epsilon)).get();
+					} catch (ExecutionException e) {
+						throw new IllegalStateException(e.getCause());
+					}
+					System.out.println(InstanceLoader.name(instance) + "," + k + "," + formulation + "," + solver.rows
+							+ "," + solver.columns + "," + solver.bound + "," + solver.primalObjective + ","
+							+ solver.primalResidual + "," + solver.dualResidual + "," + solver.iterations + ","
+							+ solver.restarts + "," + (System.nanoTime() - start) / 1e9 + "," + solver.converged);
+					System.out.flush();
+				}
+		}
+		pool.shutdown();
+	}
+
+	// Ruiz equilibration of the rows and columns, then Pock-Chambolle with alpha = 1
+	private void scale() {
+		double[] rowNorm = new double[rows];
+		double[] columnNorm = new double[columns];
+		for (int pass = 0; pass <= RUIZ_ITERATIONS; pass++) {
+			boolean ruiz = pass < RUIZ_ITERATIONS;
+			Arrays.fill(rowNorm, 0);
+			Arrays.fill(columnNorm, 0);
+			operator.forEachEntry((row, column, value) -> {
+				double entry = Math.abs(rowScale[row] * value * columnScale[column]);
+				if (ruiz) {
+					rowNorm[row] = Math.max(rowNorm[row], entry);
+					columnNorm[column] = Math.max(columnNorm[column], entry);
+				} else {
+					rowNorm[row] += entry;
+					columnNorm[column] += entry;
+				}
+			});
+			for (int row = 0; row < rows; row++)
+				if (rowNorm[row] > 0)
+					rowScale[row] /= Math.sqrt(rowNorm[row]);
+			for (int column = 0; column < columns; column++)
+				if (columnNorm[column] > 0)
+					columnScale[column] /= Math.sqrt(columnNorm[column]);
+		}
+
+		for (int column = 0; column < columns; column++) {
+			objective[column] *= columnScale[column];
+			lower[column] /= columnScale[column];
+			upper[column] /= columnScale[column];
+		}
+		for (int row = 0; row < rows; row++)
+			rhs[row] *= rowScale[row];
+	}
+
+	// out = K~ x
+	private void multiply(double[] x, double[] out) {
+		parallel(columns, (from, to) -> {
+			for (int column = from; column < to; column++)
+				columnScratch[column] = columnScale[column] * x[column];
+		});
+		operator.multiply(columnScratch, out);
+		parallel(rows, (from, to) -> {
+			for (int row = from; row < to; row++)
+				out[row] *= rowScale[row];
+		});
+	}
+
+	// out = K~^T y, using scratch for R y
+	private void multiplyTranspose(double[] y, double[] out, double[] scratch) {
+		parallel(rows, (from, to) -> {
+			for (int row = from; row < to; row++)
+				scratch[row] = rowScale[row] * y[row];
+		});
+		operator.multiplyTranspose(scratch, out);
+		parallel(columns, (from, to) -> {
+			for (int column = from; column < to; column++)
+				out[column] *= columnScale[column];
+		});
+	}
+
+	void solve(double seconds, double tolerance) {
+		long deadline = System.nanoTime() + (long) Math.min(seconds * 1e9, Long.MAX_VALUE / 2);
+		double[] x = new double[columns];
+		double[] y = new double[rows];
+		double[] kx = new double[rows];
+		double[] kty = new double[columns];
+		double[] next = new double[rows];
+		double[] xAverage = new double[columns];
+		double[] yAverage = new double[rows];
+		double[] kxAverage = new double[rows];
+		double[] ktyAverage = new double[columns];
+		double[] xRestart = new double[columns];
+		double[] yRestart = new double[rows];
+
+		// ||K~||_2 by power iteration on K~^T K~, x and kty are free until the start
+		Arrays.fill(x, 1 / Math.sqrt(Math.max(columns, 1)));
+		double normSquared = 1;
+		for (int iteration = 0; iteration < POWER_ITERATIONS; iteration++) {
+			multiply(x, kx);
+			multiplyTranspose(kx, kty, next);
+			normSquared = Math.sqrt(dot(kty, kty));
+			if (normSquared == 0)
+				break;
+			double inverse = 1 / normSquared;
+			parallel(columns, (from, to) -> {
+				for (int column = from; column < to; column++)
+					x[column] = kty[column] * inverse;
+			});
+		}
+		double step = 0.998 / Math.sqrt(Math.max(normSquared, 1e-12));
+
+		double objectiveNorm = Math.sqrt(dot(objective, objective));
+		double rhsNorm = Math.sqrt(dot(rhs, rhs));
+		double primalWeight = objectiveNorm > 1e-10 && rhsNorm > 1e-10 ? objectiveNorm / rhsNorm : 1;
+
+		for (int column = 0; column < columns; column++)
+			x[column] = Math.min(Math.max(0, lower[column]), upper[column]);
+		Arrays.fill(y, 0);
+		Arrays.fill(kty, 0);
+		multiply(x, kx);
+		copy(x, xRestart);
+		copy(y, yRestart);
+		double restartError = kktError(kkt(x, y, kx, kty));
+		double previousError = Double.POSITIVE_INFINITY;
+		int averaged = 0;
+		int sinceRestart = 0;
+
+		while (System.nanoTime() < deadline) {
+			// one pass per vector: the scaling of the products and the running
+			// averages are folded into the updates
+			double tau = step / primalWeight;
+			double sigma = step * primalWeight;
+			double weight = 1.0 / ++averaged;
+			double[] product = next;
+			double[] previous = kx;
+			parallel(columns, (from, to) -> {
+				for (int column = from; column < to; column++) {
+					double value = x[column] - tau * (objective[column] - kty[column]);
+					value = Math.min(Math.max(value, lower[column]), upper[column]);
+					x[column] = value;
+					xAverage[column] += (value - xAverage[column]) * weight;
+					columnScratch[column] = columnScale[column] * value;
+				}
+			});
+			operator.multiply(columnScratch, product);
+			// previous[row] is read before R y overwrites it
+			parallel(rows, (from, to) -> {
+				for (int row = from; row < to; row++) {
+					double kxValue = product[row] * rowScale[row];
+					product[row] = kxValue;
+					double value = y[row] + sigma * (rhs[row] - 2 * kxValue + previous[row]);
+					if (!equality[row] && value < 0)
+						value = 0;
+					y[row] = value;
+					yAverage[row] += (value - yAverage[row]) * weight;
+					kxAverage[row] += (kxValue - kxAverage[row]) * weight;
+					previous[row] = rowScale[row] * value;
+				}
+			});
+			kx = product;
+			next = previous;
+			operator.multiplyTranspose(previous, kty);
+			parallel(columns, (from, to) -> {
+				for (int column = from; column < to; column++) {
+					kty[column] *= columnScale[column];
+					ktyAverage[column] += (kty[column] - ktyAverage[column]) * weight;
+				}
+			});
+			iterations++;
+			sinceRestart++;
+			if (iterations % CHECK_INTERVAL != 0)
+				continue;
+
+			double[] current = kkt(x, y, kx, kty);
+			double[] average = kkt(xAverage, yAverage, kxAverage, ktyAverage);
+			boolean useAverage = kktError(average) < kktError(current);
+			double[] candidate = useAverage ? average : current;
+			double error = kktError(candidate);
+			record(candidate);
+			if (candidate[0] <= tolerance * (1 + rhsNorm) && candidate[1] <= tolerance * (1 + objectiveNorm)
+					&& Math.abs(candidate[2] - candidate[3]) <= tolerance
+							* (1 + Math.abs(candidate[2]) + Math.abs(candidate[3]))) {
+				converged = true;
+				break;
+			}
+
+			if (error <= 0.2 * restartError || error <= 0.8 * restartError && error > previousError
+					|| sinceRestart >= 0.36 * iterations) {
+				if (useAverage) {
+					copy(xAverage, x);
+					copy(yAverage, y);
+					copy(kxAverage, kx);
+					copy(ktyAverage, kty);
+				}
+				double primalMove = Math.sqrt(distanceSquared(x, xRestart));
+				double dualMove = Math.sqrt(distanceSquared(y, yRestart));
+				if (primalMove > 1e-10 && dualMove > 1e-10)
+					primalWeight = Math.exp(0.5 * Math.log(dualMove / primalMove) + 0.5 * Math.log(primalWeight));
+				copy(x, xRestart);
+				copy(y, yRestart);
+				restartError = error;
+				averaged = 0;
+				sinceRestart = 0;
+				restarts++;
+			}
+			previousError = error;
+		}
+		record(kkt(x, y, kx, kty));
+	}
+
+	// keeps the best dual bound and the residuals of the last point checked
+	private void record(double[] kkt) {
+		primalResidual = kkt[0];
+		dualResidual = kkt[1];
+		primalObjective = kkt[2];
+		if (kkt[1] == 0 && kkt[3] > bound)
+			bound = kkt[3];
+	}
+
+	private static double kktError(double[] kkt) {
+		return Math.sqrt(kkt[0] * kkt[0] + kkt[1] * kkt[1] + (kkt[2] - kkt[3]) * (kkt[2] - kkt[3]));
+	}
+
+	// {primal residual, dual residual, primal objective, dual objective} of the
+	// unscaled problem at the scaled point (x, y), whose products are kx and kty
+	private double[] kkt(double[] x, double[] y, double[] kx, double[] kty) {
+		double primal = sum(rows, (from, to) -> {
+			double total = 0;
+			for (int row = from; row < to; row++) {
+				double violation = rhs[row] - kx[row];
+				if (!equality[row] && violation < 0)
+					violation = 0;
+				violation /= Math.abs(rowScale[row]);
+				total += violation * violation;
+			}
+			return total;
+		});
+		double dual = sum(columns, (from, to) -> {
+			double total = 0;
+			for (int column = from; column < to; column++) {
+				double reducedCost = objective[column] - kty[column];
+				double limit = reducedCost > 0 ? lower[column] : upper[column];
+				if (reducedCost != 0 && Double.isInfinite(limit)) {
+					double residual = reducedCost / columnScale[column];
+					total += residual * residual;
+				}
+			}
+			return total;
+		});
+		double primalObjective = dot(objective, x);
+		double dualObjective = dot(rhs, y) + sum(columns, (from, to) -> {
+			double total = 0;
+			for (int column = from; column < to; column++) {
+				double reducedCost = objective[column] - kty[column];
+				double limit = reducedCost > 0 ? lower[column] : upper[column];
+				if (reducedCost != 0 && !Double.isInfinite(limit))
+					total += reducedCost * limit;
+			}
+			return total;
+		});
+		return new double[] { Math.sqrt(primal), Math.sqrt(dual), primalObjective, dualObjective };
+	}
+
+	// parallel loops over chunks of CHUNK elements
+
+	interface Range {
+		void run(int from, int to);
+	}
+
+	interface RangeSum {
+		double sum(int from, int to);
+	}
+
+	static void parallel(int length, Range range) {
+		IntStream.range(0, (length + CHUNK - 1) / CHUNK).parallel()
+				.forEach(chunk -> range.run(chunk * CHUNK, Math.min(length, (chunk + 1) * CHUNK)));
+	}
+
+	static double sum(int length, RangeSum range) {
+		return IntStream.range(0, (length + CHUNK - 1) / CHUNK).parallel()
+				.mapToDouble(chunk -> range.sum(chunk * CHUNK, Math.min(length, (chunk + 1) * CHUNK))).sum();
+	}
+
+	private static double dot(double[] a, double[] b) {
+		return sum(a.length, (from, to) -> {
+			double total = 0;
+			for (int i = from; i < to; i++)
+				total += a[i] * b[i];
+			return total;
+		});
+	}
+
+	private static double distanceSquared(double[] a, double[] b) {
+		return sum(a.length, (from, to) -> {
+			double total = 0;
+			for (int i = from; i < to; i++)
+				total += (a[i] - b[i]) * (a[i] - b[i]);
+			return total;
+		});
+	}
+
+	private static void copy(double[] from, double[] to) {
+		parallel(from.length, (start, end) -> System.arraycopy(from, start, to, start, end - start));
+	}
+
+	// a SparseModel in CSR, with its transpose for K^T y
+	static class CsrOperator implements Operator {
+		final SparseModel model;
+		final int[] columnStart;
+		final int[] columnRow;
+		final double[] columnValue;
+
+		CsrOperator(SparseModel model) {
+			this.model = model;
+			int columns = model.numberOfColumns;
+			columnStart = new int[columns + 1];
+			columnRow = new int[model.numberOfNonZeros];
+			columnValue = new double[model.numberOfNonZeros];
+			for (int i = 0; i < model.numberOfNonZeros; i++)
+				columnStart[model.rowIndex[i] + 1]++;
+			for (int column = 0; column < columns; column++)
+				columnStart[column + 1] += columnStart[column];
+			int[] next = Arrays.copyOf(columnStart, columns);
+			for (int row = 0; row < model.numberOfRows; row++)
+				for (int i = model.rowStart[row]; i < model.rowStart[row + 1]; i++) {
+					int position = next[model.rowIndex[i]]++;
+					columnRow[position] = row;
+					columnValue[position] = model.value[i];
+				}
+		}
+
+		@Override
+		public int rows() {
+			return model.numberOfRows;
+		}
+
+		@Override
+		public int columns() {
+			return model.numberOfColumns;
+		}
+
+		@Override
+		public void multiply(double[] x, double[] out) {
+			parallel(model.numberOfRows, (from, to) -> {
+				for (int row = from; row < to; row++) {
+					double total = 0;
+					for (int i = model.rowStart[row]; i < model.rowStart[row + 1]; i++)
+						total += model.value[i] * x[model.rowIndex[i]];
+					out[row] = total;
+				}
+			});
+		}
+
+		@Override
+		public void multiplyTranspose(double[] y, double[] out) {
+			parallel(model.numberOfColumns, (from, to) -> {
+				for (int column = from; column < to; column++) {
+					double total = 0;
+					for (int i = columnStart[column]; i < columnStart[column + 1]; i++)
+						total += columnValue[i] * y[columnRow[i]];
+					out[column] = total;
+				}
+			});
+		}
+
+		@Override
+		public void forEachEntry(EntryVisitor visitor) {
+			for (int row = 0; row < model.numberOfRows; row++)
+				for (int i = model.rowStart[row]; i < model.rowStart[row + 1]; i++)
+					visitor.visit(row, model.rowIndex[i], model.value[i]);
+		}
+
+		@Override
+		public void data(double[] objective, double[] lower, double[] upper, double[] rhs, char[] sense) {
+			System.arraycopy(model.objective, 0, objective, 0, model.numberOfColumns);
+			System.arraycopy(model.lowerBound, 0, lower, 0, model.numberOfColumns);
+			System.arraycopy(model.upperBound, 0, upper, 0, model.numberOfColumns);
+			System.arraycopy(model.rhs, 0, rhs, 0, model.numberOfRows);
+			System.arraycopy(model.sense, 0, sense, 0, model.numberOfRows);
+		}
+	}
+
+	// MCF with every commodity, as ModelGenerator.mcf lays it out: the x, y
+	// columns and the rows (2) - (6), (33) are a SparseModel, then commodity c
+	// has the flows fStart + c * arcs + arc, the n rows (31) and the arcs rows
+	// (32), whose products are computed from the graph arrays
+	static class McfOperator implements Operator {
+		static final int ARC_BLOCK = 1 << 10;
+
+		final Graph graph;
+		final CsrOperator base;
+		final int n;
+		final int arcs;
+		final int baseRows;
+		final int baseColumns;
+		final int blockRows;
+
+		McfOperator(Graph graph, int k) {
+			this.graph = graph;
+			base = new CsrOperator(ModelGenerator.mcf(graph, k, new int[0]));
+			n = graph.numberOfNodes;
+			arcs = graph.numberOfArcs;
+			baseRows = base.rows();
+			baseColumns = base.columns();
+			blockRows = n + arcs;
+			if (baseColumns + (long) n * arcs > Integer.MAX_VALUE || baseRows + (long) n * blockRows > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("MCF with " + (long) n * arcs + " flows does not fit in arrays");
+		}
+
+		@Override
+		public int rows() {
+			return baseRows + n * blockRows;
+		}
+
+		@Override
+		public int columns() {
+			return baseColumns + n * arcs;
+		}
+
+		@Override
+		public void multiply(double[] x, double[] out) {
+			base.multiply(x, out);
+			int xStart = base.model.xStart;
+			int yStart = base.model.yStart;
+			IntStream.range(0, n).parallel().forEach(commodity -> {
+				int flow = baseColumns + commodity * arcs;
+				int row = baseRows + commodity * blockRows;
+				for (int node = 0; node < n; node++) {
+					double total = 0;
+					for (int pos = graph.inStart[node]; pos < graph.inStart[node + 1]; pos++)
+						total += x[flow + graph.inArcs[pos]];
+					for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++)
+						total -= x[flow + graph.outArcs[pos]];
+					if (node == 0 && commodity != 0)
+						total += x[yStart + commodity];
+					else if (node == commodity && commodity != 0)
+						total -= x[yStart + node];
+					out[row + node] = total;
+				}
+				for (int arc = 0; arc < arcs; arc++)
+					out[row + n + arc] = x[flow + arc] - x[xStart + arc];
+			});
+		}
+
+		@Override
+		public void multiplyTranspose(double[] y, double[] out) {
+			base.multiplyTranspose(y, out);
+			int xStart = base.model.xStart;
+			int yStart = base.model.yStart;
+			// blocks of arcs, so that every commodity is read in contiguous runs
+			int blocks = (arcs + ARC_BLOCK - 1) / ARC_BLOCK;
+			IntStream.range(0, blocks).parallel().forEach(block -> {
+				int from = block * ARC_BLOCK;
+				int to = Math.min(arcs, from + ARC_BLOCK);
+				for (int commodity = 0; commodity < n; commodity++) {
+					int row = baseRows + commodity * blockRows + n;
+					for (int arc = from; arc < to; arc++)
+						out[xStart + arc] -= y[row + arc];
+				}
+			});
+			for (int commodity = 1; commodity < n; commodity++) {
+				int row = baseRows + commodity * blockRows;
+				out[yStart + commodity] += y[row] - y[row + commodity];
+			}
+			IntStream.range(0, n).parallel().forEach(commodity -> {
+				int flow = baseColumns + commodity * arcs;
+				int row = baseRows + commodity * blockRows;
+				for (int arc = 0; arc < arcs; arc++)
+					out[flow + arc] = y[row + graph.head[arc]] - y[row + graph.tail[arc]] + y[row + n + arc];
+			});
+		}
+
+		@Override
+		public void forEachEntry(EntryVisitor visitor) {
+			base.forEachEntry(visitor);
+			int xStart = base.model.xStart;
+			int yStart = base.model.yStart;
+			for (int commodity = 0; commodity < n; commodity++) {
+				int flow = baseColumns + commodity * arcs;
+				int row = baseRows + commodity * blockRows;
+				for (int arc = 0; arc < arcs; arc++) {
+					visitor.visit(row + graph.head[arc], flow + arc, 1);
+					visitor.visit(row + graph.tail[arc], flow + arc, -1);
+					visitor.visit(row + n + arc, flow + arc, 1);
+					visitor.visit(row + n + arc, xStart + arc, -1);
+				}
+				if (commodity != 0) {
+					visitor.visit(row, yStart + commodity, 1);
+					visitor.visit(row + commodity, yStart + commodity, -1);
+				}
+			}
+		}
+
+		@Override
+		public void data(double[] objective, double[] lower, double[] upper, double[] rhs, char[] sense) {
+			base.data(objective, lower, upper, rhs, sense);
+			Arrays.fill(lower, baseColumns, columns(), 0);
+			Arrays.fill(upper, baseColumns, columns(), 1);
+			for (int commodity = 0; commodity < n; commodity++) {
+				int row = baseRows + commodity * blockRows;
+				Arrays.fill(sense, row, row + n, SparseModel.EQUAL);
+				Arrays.fill(sense, row + n, row + blockRows, SparseModel.LESS_EQUAL);
+			}
+		}
+	}
+
+}
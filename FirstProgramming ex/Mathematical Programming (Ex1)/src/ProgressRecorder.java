@@ -0,0 +1,182 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+
+// The progress of a solve over time, one CSV line per sample: seconds since
+// attach(), best bound, incumbent, gap, nodes processed and nodes left.
+//
+// Samples come from a MIPInfoCallback, at most one per interval and only
+// when the bound, the incumbent or the node count moved; an incumbent
+// callback would be a control callback and turn off dynamic search. The
+// CPLEX threads write the samples into a ring buffer without locks (a CAS
+// claims a slot, a release store publishes it) and a daemon thread writes
+// them to the file every FLUSH_MILLIS. When the writer falls behind by the
+// whole buffer, samples are dropped and counted rather than waited for.
+public class ProgressRecorder implements AutoCloseable {
+
+	static final int CAPACITY = 1 << 14;
+	static final long FLUSH_MILLIS = 200;
+
+	final String file;
+	final long intervalNanos;
+
+	private final long[] time = new long[CAPACITY];
+	private final double[] bound = new double[CAPACITY];
+	private final double[] incumbent = new double[CAPACITY];
+	private final double[] gap = new double[CAPACITY];
+	private final long[] nodes = new long[CAPACITY];
+	private final long[] open = new long[CAPACITY];
+	// the sequence number stored in a slot once its sample is complete
+	private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+	private final AtomicLong claimed = new AtomicLong();
+	private final AtomicLong consumed = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final AtomicLong lastSample = new AtomicLong(Long.MIN_VALUE);
+	private volatile double lastBound = Double.NaN;
+	private volatile double lastIncumbent = Double.NaN;
+	private volatile long lastNodes = -1;
+
+	private final PrintWriter out;
+	private final Thread writer;
+	private volatile boolean closed;
+	private long start;
+
+	ProgressRecorder(String file, double intervalSeconds) throws IOException {
+		this.file = file;
+		this.intervalNanos = (long) (intervalSeconds * 1e9);
+		for (int slot = 0; slot < CAPACITY; slot++)
+			published.set(slot, -1);
+		out = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		out.println("seconds,bound,incumbent,gap,nodes,open");
+		start = System.nanoTime();
+		writer = new Thread(this::writeLoop, "progress " + file);
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	// samples the solves of cplex from now on, with the time counted from now;
+	// incumbents (may be null) gets every improving incumbent, as CPLEX keeps a
+	// single info callback
+	void attach(IloCplex cplex, IncumbentCallback incumbents) throws IloException {
+		start = System.nanoTime();
+		lastSample.set(Long.MIN_VALUE);
+		cplex.use(new Sampler(incumbents));
+	}
+
+	long dropped() {
+		return dropped.get();
+	}
+
+	private class Sampler extends IloCplex.MIPInfoCallback {
+
+		private final IncumbentCallback incumbents;
+
+		Sampler(IncumbentCallback incumbents) {
+			this.incumbents = incumbents;
+		}
+
+		@Override
+		protected void main() throws IloException {
+			if (incumbents != null && hasIncumbent() && incumbents.improves(getIncumbentObjValue()))
+				incumbents.found(getIncumbentValues(incumbents.x), getIncumbentValues(incumbents.y));
+			long now = System.nanoTime();
+			long last = lastSample.get();
+			if (now - last < intervalNanos)
+				return;
+			double currentBound = getBestObjValue();
+			boolean hasIncumbent = hasIncumbent();
+			double currentIncumbent = hasIncumbent ? getIncumbentObjValue() : Double.NaN;
+			long currentNodes = getNnodes64();
+			if (currentBound == lastBound && currentNodes == lastNodes
+					&& (currentIncumbent == lastIncumbent || Double.isNaN(currentIncumbent) && Double.isNaN(lastIncumbent))) {
+				// nothing to record: wait for the next interval before asking again
+				lastSample.compareAndSet(last, now);
+				return;
+			}
+			// one thread takes the sample of this interval
+			if (!lastSample.compareAndSet(last, now))
+				return;
+			lastBound = currentBound;
+			lastIncumbent = currentIncumbent;
+			lastNodes = currentNodes;
+			record(now - start, currentBound, currentIncumbent, hasIncumbent ? getMIPRelativeGap() : Double.NaN,
+					currentNodes, getNremainingNodes64());
+		}
+	}
+
+	// adds a sample, or drops it when the buffer is full
+	void record(long nanos, double sampleBound, double sampleIncumbent, double sampleGap, long sampleNodes,
+			long sampleOpen) {
+		long sequence;
+		do {
+			sequence = claimed.get();
+			if (sequence - consumed.get() >= CAPACITY) {
+				dropped.incrementAndGet();
+				return;
+			}
+		} while (!claimed.compareAndSet(sequence, sequence + 1));
+
+		int slot = (int) (sequence & (CAPACITY - 1));
+		time[slot] = nanos;
+		bound[slot] = sampleBound;
+		incumbent[slot] = sampleIncumbent;
+		gap[slot] = sampleGap;
+		nodes[slot] = sampleNodes;
+		open[slot] = sampleOpen;
+		published.lazySet(slot, sequence);
+	}
+
+	private void writeLoop() {
+		while (!closed) {
+			LockSupport.parkNanos(FLUSH_MILLIS * 1000000);
+			drain();
+		}
+	}
+
+	// writes the published samples in order, up to the first one still being written
+	private synchronized void drain() {
+		long next = consumed.get();
+		while (true) {
+			int slot = (int) (next & (CAPACITY - 1));
+			if (published.get(slot) != next)
+				break;
+			out.println(time[slot] / 1e9 + "," + number(bound[slot]) + "," + number(incumbent[slot]) + ","
+					+ number(gap[slot]) + "," + nodes[slot] + "," + open[slot]);
+			consumed.lazySet(++next);
+		}
+		out.flush();
+	}
+
+	private static String number(double value) {
+		return Double.isNaN(value) ? "" : Double.toString(value);
+	}
+
+	// writes what is left, with the outcome of the solve as the last sample
+	void finish(double finalBound, double finalIncumbent, double finalGap, long finalNodes) {
+		record(System.nanoTime() - start, finalBound, finalIncumbent, finalGap, finalNodes, 0);
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		drain();
+		if (dropped.get() > 0)
+			out.println("# " + dropped.get() + " samples dropped");
+		out.close();
+	}
+
+}
@@ -0,0 +1,302 @@
+import java.util.Arrays;
+
+// Removes the edges and vertices that cannot be in a k-tree lighter than a
+// known upper bound, and renumbers what is left so that the models are built
+// on the reduced graph. Tests, repeated until nothing changes:
+//
+// - edge: w_e plus the k - 2 lightest other edges exceeds the bound;
+// - ball: every edge of a k-tree through v has an endpoint at distance at
+//   most k - 2 from v, so the k - 1 lightest such edges exceed the bound;
+// - component: v lies in a connected component with less than k vertices.
+//
+// A reduction can then be fixed further by Lagrangian bounds on the trees
+// through every edge and vertex of its reduced graph.
+public class Reduction {
+
+	// a ball test is given up when the ball may have more edges than this
+	static final int BALL_EDGE_LIMIT = 20000;
+
+	final Graph original;
+	final Graph reduced;
+	final int[] originalNode; // reduced node -> original node
+	final int[] originalEdge; // reduced edge -> original edge
+	final int[] reducedNode; // original node -> reduced node, -1 if removed
+	final int[] reducedEdge; // original edge -> reduced edge, -1 if removed
+
+	int edgesRemovedByWeight;
+	int nodesRemovedByBall;
+	int nodesRemovedByComponent;
+	int edgesFixed;
+	int nodesFixed;
+
+	private Reduction(Graph original, boolean[] aliveNode, boolean[] aliveEdge) {
+		this.original = original;
+
+		reducedNode = new int[original.numberOfNodes];
+		int nodes = 0;
+		for (int node = 0; node < original.numberOfNodes; node++)
+			reducedNode[node] = node == 0 || aliveNode[node] ? nodes++ : -1;
+		originalNode = new int[nodes];
+		for (int node = 0; node < original.numberOfNodes; node++)
+			if (reducedNode[node] >= 0)
+				originalNode[reducedNode[node]] = node;
+
+		// root edges first, as in the data files
+		reducedEdge = new int[original.numberOfEdges];
+		Arrays.fill(reducedEdge, -1);
+		int edges = 0;
+		for (int pass = 0; pass < 2; pass++)
+			for (int edge = 0; edge < original.numberOfEdges; edge++) {
+				boolean root = original.reverse[edge] == -1;
+				if ((pass == 0) != root)
+					continue;
+				int a = original.tail[edge], b = original.head[edge];
+				boolean alive = root ? aliveNode[b] : aliveEdge[edge] && aliveNode[a] && aliveNode[b];
+				if (alive)
+					reducedEdge[edge] = edges++;
+			}
+
+		originalEdge = new int[edges];
+		int[] endpoint_1 = new int[edges];
+		int[] endpoint_2 = new int[edges];
+		int[] weight = new int[edges];
+		for (int edge = 0; edge < original.numberOfEdges; edge++) {
+			int index = reducedEdge[edge];
+			if (index < 0)
+				continue;
+			originalEdge[index] = edge;
+			endpoint_1[index] = reducedNode[original.tail[edge]];
+			endpoint_2[index] = reducedNode[original.head[edge]];
+			weight[index] = original.weight[edge];
+		}
+		reduced = new Graph(nodes, edges, endpoint_1, endpoint_2, weight);
+	}
+
+	static Reduction reduce(Graph graph, int k, long upperBound) {
+		int n = graph.numberOfNodes;
+		boolean[] aliveNode = new boolean[n];
+		boolean[] aliveEdge = new boolean[graph.numberOfEdges];
+		for (int node = 1; node < n; node++)
+			aliveNode[node] = true;
+		for (int edge = 0; edge < graph.numberOfEdges; edge++)
+			aliveEdge[edge] = graph.reverse[edge] != -1;
+
+		int[] removed = new int[3];
+		if (k >= 2)
+			for (boolean changed = true; changed;) {
+				int edgeTest = edgeTest(graph, k, upperBound, aliveNode, aliveEdge);
+				int ballTest = ballTest(graph, k, upperBound, aliveNode, aliveEdge);
+				int componentTest = componentTest(graph, k, aliveNode, aliveEdge);
+				removed[0] += edgeTest;
+				removed[1] += ballTest;
+				removed[2] += componentTest;
+				changed = edgeTest + ballTest + componentTest > 0;
+			}
+
+		Reduction reduction = new Reduction(graph, aliveNode, aliveEdge);
+		reduction.edgesRemovedByWeight = removed[0];
+		reduction.nodesRemovedByBall = removed[1];
+		reduction.nodesRemovedByComponent = removed[2];
+		return reduction;
+	}
+
+	// the reduction of the original graph that also removes the edges and
+	// vertices of the reduced one whose bound, as in LagrangianRelaxation, is
+	// above upperBound: they are in no tree as light as upperBound
+	Reduction fix(int k, long upperBound, double[] edgeBound, double[] vertexBound) {
+		boolean[] aliveNode = new boolean[original.numberOfNodes];
+		boolean[] aliveEdge = new boolean[original.numberOfEdges];
+		int nodes = 0, edges = 0;
+		for (int node = 1; node < original.numberOfNodes; node++)
+			if (reducedNode[node] >= 0) {
+				aliveNode[node] = vertexBound[reducedNode[node]] <= upperBound + 1e-6;
+				nodes += aliveNode[node] ? 0 : 1;
+			}
+		for (int edge = 0; edge < original.numberOfEdges; edge++)
+			if (reducedEdge[edge] >= 0 && original.reverse[edge] != -1) {
+				aliveEdge[edge] = edgeBound[reducedEdge[edge]] <= upperBound + 1e-6;
+				edges += aliveEdge[edge] ? 0 : 1;
+			}
+
+		// the vertices cut off from k - 1 others go too; one pass is enough, as
+		// removing a component does not shrink the others
+		int components = componentTest(original, k, aliveNode, aliveEdge);
+
+		Reduction fixed = new Reduction(original, aliveNode, aliveEdge);
+		fixed.edgesRemovedByWeight = edgesRemovedByWeight;
+		fixed.nodesRemovedByBall = nodesRemovedByBall;
+		fixed.nodesRemovedByComponent = nodesRemovedByComponent + components;
+		fixed.edgesFixed = edgesFixed + edges;
+		fixed.nodesFixed = nodesFixed + nodes;
+		return fixed;
+	}
+
+	private static boolean alive(Graph graph, int edge, boolean[] aliveNode, boolean[] aliveEdge) {
+		return aliveEdge[edge] && aliveNode[graph.tail[edge]] && aliveNode[graph.head[edge]];
+	}
+
+	private static int edgeTest(Graph graph, int k, long upperBound, boolean[] aliveNode, boolean[] aliveEdge) {
+		int count = 0;
+		int[] sorted = new int[graph.numberOfEdges];
+		for (int edge = 0; edge < graph.numberOfEdges; edge++)
+			if (alive(graph, edge, aliveNode, aliveEdge))
+				sorted[count++] = graph.weight[edge];
+		if (count < k - 1)
+			return 0;
+		Arrays.sort(sorted, 0, count);
+
+		// sum of the j lightest edges other than e: drop one copy of w_e if it is among the j + 1 lightest
+		int j = k - 2;
+		long lightest = 0;
+		for (int i = 0; i < j; i++)
+			lightest += sorted[i];
+		long lightestAndNext = j < count ? lightest + sorted[j] : Long.MAX_VALUE;
+
+		int removed = 0;
+		for (int edge = 0; edge < graph.numberOfEdges; edge++) {
+			if (!alive(graph, edge, aliveNode, aliveEdge))
+				continue;
+			int w = graph.weight[edge];
+			long others = j < count && w <= sorted[j] ? lightestAndNext - w : lightest;
+			if (w + others > upperBound) {
+				aliveEdge[edge] = false;
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	private static int ballTest(Graph graph, int k, long upperBound, boolean[] aliveNode, boolean[] aliveEdge) {
+		int n = graph.numberOfNodes;
+		int[] distance = new int[n];
+		int[] seen = new int[n];
+		int[] queue = new int[n];
+		int[] weights = new int[BALL_EDGE_LIMIT];
+		int removed = 0;
+
+		for (int source = 1; source < n; source++) {
+			if (!aliveNode[source])
+				continue;
+
+			// the ball: BFS up to distance k - 2, given up when the degrees of its
+			// vertices add up to more than the edges we are willing to sort
+			int head = 0, tail = 0;
+			long degrees = graph.outDegree(source);
+			queue[tail++] = source;
+			seen[source] = source;
+			distance[source] = 0;
+			while (head < tail && degrees <= BALL_EDGE_LIMIT) {
+				int node = queue[head++];
+				if (distance[node] == k - 2)
+					continue;
+				for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+					int arc = graph.outArcs[pos];
+					int next = graph.head[arc];
+					if (seen[next] != source && alive(graph, graph.edgeOf(arc), aliveNode, aliveEdge)) {
+						seen[next] = source;
+						distance[next] = distance[node] + 1;
+						queue[tail++] = next;
+						degrees += graph.outDegree(next);
+					}
+				}
+			}
+			if (degrees > BALL_EDGE_LIMIT)
+				continue;
+
+			// the edges with an endpoint in the ball, those inside it counted once
+			int collected = 0;
+			for (int i = 0; i < tail; i++) {
+				int node = queue[i];
+				for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+					int arc = graph.outArcs[pos];
+					int next = graph.head[arc];
+					if (alive(graph, graph.edgeOf(arc), aliveNode, aliveEdge) && (seen[next] != source || next > node))
+						weights[collected++] = graph.weight[arc];
+				}
+			}
+
+			long lightest;
+			if (collected < k - 1)
+				lightest = Long.MAX_VALUE;
+			else {
+				Arrays.sort(weights, 0, collected);
+				lightest = 0;
+				for (int i = 0; i < k - 1; i++)
+					lightest += weights[i];
+			}
+			if (lightest > upperBound) {
+				aliveNode[source] = false;
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	private static int componentTest(Graph graph, int k, boolean[] aliveNode, boolean[] aliveEdge) {
+		int n = graph.numberOfNodes;
+		int[] component = new int[n];
+		int[] queue = new int[n];
+		Arrays.fill(component, -1);
+		int removed = 0;
+
+		for (int source = 1; source < n; source++) {
+			if (!aliveNode[source] || component[source] >= 0)
+				continue;
+			int head = 0, tail = 0;
+			queue[tail++] = source;
+			component[source] = source;
+			while (head < tail) {
+				int node = queue[head++];
+				for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+					int arc = graph.outArcs[pos];
+					int next = graph.head[arc];
+					if (component[next] < 0 && alive(graph, graph.edgeOf(arc), aliveNode, aliveEdge)) {
+						component[next] = source;
+						queue[tail++] = next;
+					}
+				}
+			}
+			if (tail < k)
+				for (int i = 0; i < tail; i++) {
+					aliveNode[queue[i]] = false;
+					removed++;
+				}
+		}
+		return removed;
+	}
+
+	// the tree in reduced numbering, null if it uses something that was removed
+	KTree toReduced(KTree tree) {
+		int[] vertices = new int[tree.vertices.length];
+		int[] edges = new int[tree.edges.length];
+		for (int i = 0; i < vertices.length; i++)
+			if ((vertices[i] = reducedNode[tree.vertices[i]]) < 0)
+				return null;
+		for (int i = 0; i < edges.length; i++)
+			if ((edges[i] = reducedEdge[tree.edges[i]]) < 0)
+				return null;
+		return new KTree(vertices, edges, tree.weight);
+	}
+
+	KTree toOriginal(KTree tree) {
+		int[] vertices = new int[tree.vertices.length];
+		int[] edges = new int[tree.edges.length];
+		for (int i = 0; i < vertices.length; i++)
+			vertices[i] = originalNode[tree.vertices[i]];
+		for (int i = 0; i < edges.length; i++)
+			edges[i] = originalEdge[tree.edges[i]];
+		return new KTree(vertices, edges, tree.weight);
+	}
+
+	// what the reduction saves on the model of the given formulation
+	String report(Formulation formulation) {
+		long before = formulation.columns(original.numberOfNodes, original.numberOfArcs);
+		long after = formulation.columns(reduced.numberOfNodes, reduced.numberOfArcs);
+		return "removed " + (original.numberOfArcs - reduced.numberOfArcs) + "/" + original.numberOfArcs + " arcs, "
+				+ (original.numberOfNodes - reduced.numberOfNodes) + "/" + original.numberOfNodes + " nodes, "
+				+ (before - after) + "/" + before + " variables"
+				+ (edgesFixed + nodesFixed == 0 ? ""
+						: ", " + edgesFixed + " edges and " + nodesFixed + " nodes by the Lagrangian bounds");
+	}
+
+}
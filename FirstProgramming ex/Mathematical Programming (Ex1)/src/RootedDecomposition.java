@@ -0,0 +1,253 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ilog.concert.IloException;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+
+// Solves a model one entry vertex at a time instead of leaving CPLEX the
+// symmetric choice of the root arc. Subproblem i fixes the root arc to the
+// i-th vertex of the order and forbids the vertices before it, so every tree
+// belongs to exactly one subproblem, the one of its first vertex; the order
+// puts first the vertices with the lightest edges, whose subproblems are the
+// largest and the most likely to hold good trees. Given Lagrangian bounds on
+// the trees through every vertex, the order is by bound instead, and a
+// subproblem whose entry is bounded above the best tree is pruned unsolved.
+//
+// Every worker loads the model once in its own single threaded IloCplex and
+// only changes bounds from one subproblem to the next. The workers share the
+// best tree: a subproblem starts with the upper cutoff just below it (the
+// weights are integers), and an info callback publishes the incumbents it
+// finds and aborts the solve as soon as its bound shows that the subproblem
+// cannot beat the shared best, which tightens whenever any worker improves it.
+public class RootedDecomposition {
+
+	// a bound above best - 1 + CUTOFF_TOLERANCE cannot lead to a lighter tree
+	static final double CUTOFF_TOLERANCE = 1e-6;
+
+	final Graph graph;
+	final int k;
+	final SparseModel model;
+	final Formulation formulation;
+	final int workers;
+
+	// the vertices in the order of the subproblems
+	final int[] order;
+	// the subproblems with enough vertices left for a tree
+	final int subproblems;
+
+	private final AtomicReference<KTree> best = new AtomicReference<>();
+	// gets every improvement of the shared best, in the numbering of the instance
+	private SolutionLog solutions;
+	private Reduction reduction;
+	private final AtomicInteger next = new AtomicInteger();
+	private final AtomicLong nodes = new AtomicLong();
+	// lower bound of every subproblem: 0 or its vertex bound until it is
+	// solved, infinite once it cannot improve the best tree
+	private final double[] bound;
+	private final AtomicInteger solved = new AtomicInteger();
+	private final AtomicInteger pruned = new AtomicInteger();
+	private long deadline;
+
+	// vertexBound may be null
+	RootedDecomposition(Graph graph, int k, SparseModel model, Formulation formulation, int workers,
+			double[] vertexBound) {
+		this.graph = graph;
+		this.k = k;
+		this.model = model;
+		this.formulation = formulation;
+		this.workers = workers;
+
+		int n = graph.numberOfNodes;
+		long[] lightest = new long[n];
+		Arrays.fill(lightest, Long.MAX_VALUE);
+		for (int arc = 0; arc < graph.numberOfArcs; arc++)
+			if (graph.reverse[arc] != -1)
+				lightest[graph.tail[arc]] = Math.min(lightest[graph.tail[arc]], graph.weight[arc]);
+		Integer[] vertices = new Integer[n - 1];
+		for (int vertex = 1; vertex < n; vertex++)
+			vertices[vertex - 1] = vertex;
+		Comparator<Integer> byLightest = Comparator.comparingLong(vertex -> lightest[vertex]);
+		Arrays.sort(vertices, vertexBound == null ? byLightest
+				: Comparator.<Integer>comparingDouble(vertex -> vertexBound[vertex]).thenComparing(byLightest));
+		order = new int[n - 1];
+		for (int i = 0; i < n - 1; i++)
+			order[i] = vertices[i];
+		subproblems = Math.max(0, n - 1 - k + 1);
+		bound = new double[subproblems];
+		if (vertexBound != null)
+			for (int i = 0; i < subproblems; i++)
+				bound[i] = Math.max(0, vertexBound[order[i]]);
+	}
+
+	// hands the improvements of the best tree to solutions (may be null), reduction
+	// (may be null) mapping the graph to the instance
+	void log(SolutionLog solutions, Reduction reduction) {
+		this.solutions = solutions;
+		this.reduction = reduction;
+	}
+
+	// the best tree found within the time, start (may be null) included
+	KTree solve(double seconds, KTree start) throws IloException, InterruptedException {
+		best.set(start);
+		deadline = System.nanoTime() + (long) (Math.min(seconds, 1e9) * 1e9);
+
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<Void>> futures = new ArrayList<>();
+			for (int worker = 0; worker < workers; worker++)
+				futures.add(pool.submit(() -> {
+					work();
+					return null;
+				}));
+			for (Future<Void> future : futures)
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IloException)
+						throw (IloException) e.getCause();
+					throw new IllegalStateException(e.getCause());
+				}
+		} finally {
+			pool.shutdownNow();
+		}
+		return best.get();
+	}
+
+	private void work() throws IloException {
+		IloCplex cplex = new IloCplex();
+		BendersDecomposition benders = null;
+		try {
+			cplex.setOut(null);
+			cplex.setParam(IloCplex.Param.Threads, 1);
+			CplexBackend backend = new CplexBackend(cplex);
+			backend.load(model);
+			if (formulation == Formulation.BC)
+				BranchAndCut.attach(backend, graph, model);
+			else if (formulation == Formulation.BENDERS)
+				benders = BendersDecomposition.attach(backend, graph, model, 1);
+			IloNumVar[] x = backend.columns(model.xStart, graph.numberOfArcs);
+			IloNumVar[] y = backend.columns(model.yStart, graph.numberOfNodes);
+			Monitor monitor = new Monitor(x, y);
+			cplex.use(monitor);
+
+			// the forbidden vertices only grow, as every worker takes the subproblems in order
+			int forbidden = 0;
+			for (int i = next.getAndIncrement(); i < subproblems; i = next.getAndIncrement()) {
+				double seconds = (deadline - System.nanoTime()) / 1e9;
+				if (seconds <= 0)
+					return;
+				for (; forbidden < i; forbidden++)
+					y[order[forbidden]].setUB(0);
+				int entry = order[i];
+				KTree current = best.get();
+				if (current != null && bound[i] > current.weight - 1 + CUTOFF_TOLERANCE) {
+					bound[i] = Double.POSITIVE_INFINITY;
+					pruned.incrementAndGet();
+					continue;
+				}
+				for (int pos = graph.outStart[0]; pos < graph.outStart[1]; pos++) {
+					int arc = graph.outArcs[pos];
+					double fixed = graph.head[arc] == entry ? 1 : 0;
+					x[arc].setLB(fixed);
+					x[arc].setUB(fixed);
+				}
+
+				if (current != null)
+					cplex.setParam(IloCplex.Param.MIP.Tolerances.UpperCutoff,
+							current.weight - 1 + CUTOFF_TOLERANCE);
+				cplex.setParam(IloCplex.Param.TimeLimit, seconds);
+				monitor.aborted = false;
+				boolean feasible = cplex.solve();
+				nodes.addAndGet(cplex.getNnodes64());
+
+				IloCplex.Status status = cplex.getStatus();
+				if (monitor.aborted || status == IloCplex.Status.Infeasible) {
+					// nothing lighter than the best of the time
+					bound[i] = Double.POSITIVE_INFINITY;
+					pruned.incrementAndGet();
+				} else if (status == IloCplex.Status.Optimal) {
+					publish(KTree.fromValues(graph, cplex.getValues(x), cplex.getValues(y)));
+					bound[i] = Double.POSITIVE_INFINITY;
+					solved.incrementAndGet();
+				} else {
+					if (feasible)
+						publish(KTree.fromValues(graph, cplex.getValues(x), cplex.getValues(y)));
+					bound[i] = Math.max(bound[i], cplex.getBestObjValue());
+				}
+			}
+		} finally {
+			if (benders != null)
+				benders.shutdown();
+			cplex.end();
+		}
+	}
+
+	private void publish(KTree tree) {
+		KTree current;
+		do {
+			current = best.get();
+			if (current != null && current.weight <= tree.weight)
+				return;
+		} while (!best.compareAndSet(current, tree));
+		if (solutions != null)
+			solutions.append(SolutionLog.Source.ROOTED, reduction == null ? tree : reduction.toOriginal(tree));
+	}
+
+	// shares the incumbents of a subproblem and stops it once it cannot beat the shared best
+	private class Monitor extends IloCplex.MIPInfoCallback {
+
+		private final IloNumVar[] x;
+		private final IloNumVar[] y;
+		volatile boolean aborted;
+
+		Monitor(IloNumVar[] x, IloNumVar[] y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		protected void main() throws IloException {
+			KTree current = best.get();
+			if (hasIncumbent() && (current == null || getIncumbentObjValue() < current.weight - 0.5)) {
+				publish(KTree.fromValues(graph, getIncumbentValues(x), getIncumbentValues(y)));
+				current = best.get();
+			}
+			if (current != null && getBestObjValue() > current.weight - 1 + CUTOFF_TOLERANCE) {
+				aborted = true;
+				abort();
+			}
+		}
+	}
+
+	// the best tree is optimal when every subproblem is done
+	boolean optimal() {
+		return bound() == (best.get() == null ? Double.POSITIVE_INFINITY : best.get().weight);
+	}
+
+	// the smallest bound of the subproblems, the best tree's weight when all are done
+	double bound() {
+		double lowest = best.get() == null ? Double.POSITIVE_INFINITY : best.get().weight;
+		for (double subproblem : bound)
+			lowest = Math.min(lowest, subproblem);
+		return lowest;
+	}
+
+	long nodes() {
+		return nodes.get();
+	}
+
+	String report() {
+		return "Roots = " + solved.get() + " solved, " + pruned.get() + " pruned of " + subproblems;
+	}
+
+}
@@ -0,0 +1,160 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// What one run of the campaign did, written as one JSON line: nanosecond
+// timers of its phases, the columns, rows, nonzeros and emission time of each
+// constraint family of the model, the used heap before and after the run, the
+// CPLEX status and the error that ended it, if any.
+public class RunMetrics {
+
+	final Experiment experiment;
+	final int threads;
+	// cut when the job waited for memory
+	double timeLimit;
+
+	private final List<String> phaseName = new ArrayList<>();
+	private final List<Long> phaseNanos = new ArrayList<>();
+
+	// the decision of the AdmissionControl and the Footprint it was based on
+	String admission;
+	long predictedBytes = -1;
+	long heapBefore = -1;
+	long heapAfter = -1;
+
+	// sizes of the model handed to the solver, copied from the SparseModel
+	int columns = -1;
+	int rows = -1;
+	long nonZeros = -1;
+	String[] familyName = new String[0];
+	int[] familyColumns;
+	int[] familyRows;
+	long[] familyNonZeros;
+	long[] familyNanos;
+
+	String status;
+	int cplexStatus = -1;
+	double objective = Double.NaN;
+	double bound = Double.NaN;
+	double gap = Double.NaN;
+	long nodes = -1;
+	String error;
+	// the file of the ProgressRecorder samples, if any
+	String progress;
+	// every improvement of the metaheuristic as (milliseconds since it started,
+	// weight), if it ran
+	List<long[]> improvements = new ArrayList<>();
+	// the SolutionLog of the job and what it took, if any
+	String solutions;
+	String solutionsReport;
+
+	// the best tree of the run in the numbering of the instance, not written out
+	KTree solution;
+
+	RunMetrics(Experiment experiment, int threads, double timeLimit) {
+		this.experiment = experiment;
+		this.threads = threads;
+		this.timeLimit = timeLimit;
+	}
+
+	// records the time since start as the named phase and returns the current time
+	long phase(String name, long start) {
+		long now = System.nanoTime();
+		phaseName.add(name);
+		phaseNanos.add(now - start);
+		return now;
+	}
+
+	long phaseNanos(String name) {
+		int index = phaseName.indexOf(name);
+		return index < 0 ? 0 : phaseNanos.get(index);
+	}
+
+	void model(SparseModel model) {
+		columns = model.numberOfColumns;
+		rows = model.numberOfRows;
+		nonZeros = model.numberOfNonZeros;
+		int families = model.numberOfFamilies;
+		familyName = Arrays.copyOf(model.familyName, families);
+		familyColumns = Arrays.copyOf(model.familyColumns, families);
+		familyRows = Arrays.copyOf(model.familyRows, families);
+		familyNonZeros = Arrays.copyOf(model.familyNonZeros, families);
+		familyNanos = Arrays.copyOf(model.familyNanos, families);
+	}
+
+	static long usedHeap() {
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+
+	String toJson() {
+		StringBuilder json = new StringBuilder(512);
+		json.append("{\"instance\":").append(quote(InstanceLoader.name(experiment.instance)));
+		json.append(",\"k\":").append(experiment.k);
+		json.append(",\"kDivisor\":").append(experiment.kDivisor);
+		json.append(",\"formulation\":").append(quote(experiment.formulation.name()));
+		json.append(",\"strengthening\":").append(quote(Strengthening.toString(experiment.strengthening)));
+		json.append(",\"rooted\":").append(experiment.rooted);
+		json.append(",\"workers\":").append(experiment.workers);
+		json.append(",\"modelFree\":").append(experiment.modelFree);
+		json.append(",\"threads\":").append(threads);
+		json.append(",\"timeLimit\":").append(number(timeLimit));
+
+		json.append(",\"phases\":{");
+		for (int i = 0; i < phaseName.size(); i++)
+			json.append(i == 0 ? "" : ",").append(quote(phaseName.get(i))).append(':').append(phaseNanos.get(i));
+		json.append('}');
+
+		json.append(",\"columns\":").append(columns);
+		json.append(",\"rows\":").append(rows);
+		json.append(",\"nonZeros\":").append(nonZeros);
+		json.append(",\"families\":[");
+		for (int i = 0; i < familyName.length; i++)
+			json.append(i == 0 ? "" : ",").append("{\"name\":").append(quote(familyName[i])).append(",\"columns\":")
+					.append(familyColumns[i]).append(",\"rows\":").append(familyRows[i]).append(",\"nonZeros\":")
+					.append(familyNonZeros[i]).append(",\"nanos\":").append(familyNanos[i]).append('}');
+		json.append(']');
+
+		json.append(",\"admission\":").append(quote(admission));
+		json.append(",\"predictedBytes\":").append(predictedBytes);
+		json.append(",\"heapBefore\":").append(heapBefore);
+		json.append(",\"heapAfter\":").append(heapAfter);
+		json.append(",\"status\":").append(quote(status));
+		json.append(",\"cplexStatus\":").append(cplexStatus);
+		json.append(",\"objective\":").append(number(objective));
+		json.append(",\"bound\":").append(number(bound));
+		json.append(",\"gap\":").append(number(gap));
+		json.append(",\"nodes\":").append(nodes);
+		json.append(",\"progress\":").append(quote(progress));
+		json.append(",\"improvements\":[");
+		for (int i = 0; i < improvements.size(); i++)
+			json.append(i == 0 ? "" : ",").append('[').append(improvements.get(i)[0]).append(',')
+					.append(improvements.get(i)[1]).append(']');
+		json.append(']');
+		json.append(",\"solutions\":").append(quote(solutions));
+		json.append(",\"solutionsReport\":").append(quote(solutionsReport));
+		json.append(",\"error\":").append(quote(error));
+		return json.append('}').toString();
+	}
+
+	private static String number(double value) {
+		return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+	}
+
+	private static String quote(String text) {
+		if (text == null)
+			return "null";
+		StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if (c < ' ')
+				quoted.append(String.format("\\u%04x", (int) c));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+
+}
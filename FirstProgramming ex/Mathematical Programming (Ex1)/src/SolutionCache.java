@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+// On-disk cache of the results of the campaign, so that a rerun skips the
+// jobs already solved to optimality and resumes the others from their best
+// tree.
+//
+// An entry is a properties file named after the SHA-256 of the instance file,
+// k, the formulation and its strengthening, holding the objective, bound,
+// gap, status and the tree in the numbering of the instance. Reading an entry
+// touches it; when the directory grows past maxBytes the least recently used
+// entries are deleted.
+public class SolutionCache {
+
+	static class Entry {
+		double objective = Double.NaN;
+		double bound = Double.NaN;
+		double gap = Double.NaN;
+		String status;
+		KTree tree;
+
+		// the weights are integers, so a bound within 1 of the objective closes the gap
+		boolean optimal() {
+			return "Optimal".equals(status) || Math.ceil(bound - 1e-6) >= objective;
+		}
+	}
+
+	final Path directory;
+	final long maxBytes;
+
+	// shared with the SolutionLog headers, an instance is hashed once per process
+	private static final ConcurrentHashMap<String, String> contentHashes = new ConcurrentHashMap<>();
+
+	SolutionCache(String directory, long maxBytes) throws IOException {
+		this.directory = Paths.get(directory);
+		this.maxBytes = maxBytes;
+		Files.createDirectories(this.directory);
+	}
+
+	String key(Experiment job) throws IOException {
+		String key = instanceHash(job.instance) + "-k" + job.k + "-" + job.formulation;
+		if (!job.strengthening.isEmpty())
+			key += "-" + Strengthening.toString(job.strengthening);
+		return job.rooted ? key + "-rooted" : key;
+	}
+
+	// the entry of the job, null if there is none or it cannot be read
+	synchronized Entry get(Experiment job) throws IOException {
+		Path file = directory.resolve(key(job));
+		if (!Files.exists(file))
+			return null;
+
+		Properties properties = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		}
+		Entry entry = new Entry();
+		try {
+			entry.objective = Double.parseDouble(properties.getProperty("objective"));
+			entry.bound = Double.parseDouble(properties.getProperty("bound"));
+			entry.gap = Double.parseDouble(properties.getProperty("gap"));
+			entry.status = properties.getProperty("status");
+			int[] vertices = parseInts(properties.getProperty("vertices"));
+			int[] edges = parseInts(properties.getProperty("edges"));
+			if (vertices.length > 0)
+				entry.tree = new KTree(vertices, edges, Long.parseLong(properties.getProperty("weight")));
+		} catch (NullPointerException | NumberFormatException e) {
+			System.out.println("cache entry " + file + " is corrupt, ignored: " + e);
+			return null;
+		}
+		Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		return entry;
+	}
+
+	// stores the result of a run, keeping the best tree and bound of the old entry
+	synchronized void put(Experiment job, Entry entry) throws IOException {
+		Entry old = get(job);
+		if (old != null) {
+			if (old.tree != null && (entry.tree == null || old.tree.weight < entry.tree.weight)) {
+				entry.tree = old.tree;
+				entry.objective = old.objective;
+			}
+			if (!(entry.bound >= old.bound))
+				entry.bound = old.bound;
+			if (old.optimal())
+				entry.status = old.status;
+			entry.gap = Math.abs(entry.objective - entry.bound) / (1e-10 + Math.abs(entry.objective));
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty("instance", job.instance);
+		properties.setProperty("k", Integer.toString(job.k));
+		properties.setProperty("formulation", job.formulation.name());
+		properties.setProperty("objective", Double.toString(entry.objective));
+		properties.setProperty("bound", Double.toString(entry.bound));
+		properties.setProperty("gap", Double.toString(entry.gap));
+		properties.setProperty("status", String.valueOf(entry.status));
+		properties.setProperty("weight", entry.tree == null ? "0" : Long.toString(entry.tree.weight));
+		properties.setProperty("vertices", entry.tree == null ? "" : joinInts(entry.tree.vertices));
+		properties.setProperty("edges", entry.tree == null ? "" : joinInts(entry.tree.edges));
+
+		// written aside and moved, so that a crash never leaves half an entry
+		Path file = directory.resolve(key(job));
+		Path temporary = directory.resolve(key(job) + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temporary)) {
+			properties.store(out, job.toString());
+		}
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		evict();
+	}
+
+	// deletes the least recently used entries until the cache fits maxBytes
+	private void evict() throws IOException {
+		List<Path> files = new ArrayList<>();
+		long total = 0;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			for (Path file : stream)
+				if (Files.isRegularFile(file) && !file.toString().endsWith(".tmp")) {
+					files.add(file);
+					total += Files.size(file);
+				}
+		}
+		if (total <= maxBytes)
+			return;
+
+		files.sort((a, b) -> {
+			try {
+				return Files.getLastModifiedTime(a).compareTo(Files.getLastModifiedTime(b));
+			} catch (IOException e) {
+				return 0;
+			}
+		});
+		for (Path file : files) {
+			if (total <= maxBytes)
+				break;
+			total -= Files.size(file);
+			Files.delete(file);
+		}
+	}
+
+	static String instanceHash(String instance) throws IOException {
+		String hash = contentHashes.get(instance);
+		if (hash == null) {
+			hash = contentHash(instance);
+			contentHashes.put(instance, hash);
+		}
+		return hash;
+	}
+
+	static String contentHash(String file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(Integer.MAX_VALUE, size - position));
+				digest.update(buffer);
+			}
+		}
+		StringBuilder hex = new StringBuilder(64);
+		for (byte b : digest.digest())
+			hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+
+	private static String joinInts(int[] values) {
+		StringBuilder joined = new StringBuilder();
+		for (int i = 0; i < values.length; i++)
+			joined.append(i == 0 ? "" : " ").append(values[i]);
+		return joined.toString();
+	}
+
+	private static int[] parseInts(String text) {
+		text = text.trim();
+		if (text.isEmpty())
+			return new int[0];
+		String[] parts = text.split(" ");
+		int[] values = new int[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			values[i] = Integer.parseInt(parts[i]);
+		return values;
+	}
+
+}
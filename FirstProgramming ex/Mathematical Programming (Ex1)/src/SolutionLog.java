@@ -0,0 +1,299 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// The incumbents of a job (.ksl), appended as they are found so that later
+// runs, warm starts and other tools can take verified trees without solving
+// again. A tree is checked by a TreeValidator before it is written, and only
+// the trees lighter than all those in the log are kept, so the records of a
+// job over its runs have decreasing weights.
+//
+// Layout, little endian:
+// - header: magic "KSL1", n, m and k of the instance the trees belong to, and
+//   the SHA-256 of its file as in SolutionCache, which tells the edge
+//   numbering of a .dat from that of the .kct compiled from it;
+// - records: bytes of the payload, CRC32 of the payload, then the source, the
+//   time in milliseconds since the epoch and the weight, followed by the
+//   sorted vertices and the sorted edges as varints of the gap to the
+//   previous one, in the numbering of the instance.
+//
+// Every record goes to the file as soon as it is appended; a record cut by a
+// crash fails its length or checksum, ends the reading and is cut off when
+// the log is opened again. A log of another instance file or k is moved
+// aside, named after its hash, and a new one is started.
+public class SolutionLog implements AutoCloseable {
+
+	static final int MAGIC = 'K' | 'S' << 8 | 'L' << 16 | '1' << 24;
+	static final int HASH_BYTES = 32;
+	static final int HEADER_BYTES = 16 + HASH_BYTES;
+	// source, time and weight
+	static final int FIXED_BYTES = 17;
+
+	// where a tree comes from, stored by ordinal: add new ones at the end
+	enum Source {
+		HEURISTIC,
+		DYNAMIC_PROGRAMMING,
+		LAGRANGIAN,
+		METAHEURISTIC,
+		CPLEX,
+		ROOTED
+	}
+
+	static class Record {
+		final Source source;
+		final long millis;
+		final KTree tree;
+
+		Record(Source source, long millis, KTree tree) {
+			this.source = source;
+			this.millis = millis;
+			this.tree = tree;
+		}
+	}
+
+	final String file;
+	final Graph graph;
+	final int k;
+
+	private final TreeValidator validator;
+	private final FileChannel channel;
+	private final ByteBuffer buffer;
+	private final int[] sorted;
+	private final CRC32 crc = new CRC32();
+	private KTree best;
+	private int appended;
+	private int rejected;
+	private String lastError;
+	private IOException failure;
+
+	// appends to the log of the job; instanceHash is the hex SHA-256 of the
+	// instance file graph was loaded from
+	SolutionLog(String file, Graph graph, int k, String instanceHash) throws IOException {
+		this.file = file;
+		this.graph = graph;
+		this.k = k;
+		validator = new TreeValidator(graph, k);
+		buffer = ByteBuffer.allocate(8 + FIXED_BYTES + 5 * (2 * k)).order(ByteOrder.LITTLE_ENDIAN);
+		sorted = new int[Math.max(k, 1)];
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(graph.numberOfNodes).putInt(graph.numberOfEdges).putInt(k);
+		for (int i = 0; i < HASH_BYTES; i++)
+			header.put((byte) Integer.parseInt(instanceHash.substring(2 * i, 2 * i + 2), 16));
+		header.flip();
+
+		Path path = Paths.get(file);
+		FileChannel opened = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			if (opened.size() > 0) {
+				ByteBuffer content = load(opened, file);
+				if (!content.duplicate().limit(HEADER_BYTES).equals(header)) {
+					// the trees are in another numbering: kept aside, not mixed
+					String hash = hex(content, 16, 6);
+					opened.close();
+					Path aside = Paths.get(file + "." + hash);
+					Files.move(path, aside, StandardCopyOption.REPLACE_EXISTING);
+					System.out.println(file + ": log of another instance file or k moved to " + aside);
+					opened = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+							StandardOpenOption.WRITE);
+				} else {
+					List<Record> records = new ArrayList<>();
+					long end = scan(content, records);
+					if (end < opened.size()) {
+						rejected++;
+						lastError = "record cut at byte " + end;
+					}
+					opened.truncate(end);
+					for (Record record : records)
+						if (!validator.valid(record.tree)) {
+							rejected++;
+							lastError = record.source + " record: " + validator.error;
+						} else if (best == null || record.tree.weight < best.weight)
+							best = record.tree;
+					if (lastError != null)
+						System.out.println(file + ": " + rejected + " records dropped at open, " + lastError);
+				}
+			}
+			if (opened.size() == 0)
+				while (header.hasRemaining())
+					opened.write(header);
+			opened.position(opened.size());
+		} catch (IOException | RuntimeException e) {
+			opened.close();
+			throw e;
+		}
+		channel = opened;
+	}
+
+	private static String hex(ByteBuffer buffer, int offset, int bytes) {
+		StringBuilder hex = new StringBuilder(2 * bytes);
+		for (int i = 0; i < bytes; i++)
+			hex.append(String.format("%02x", buffer.get(offset + i)));
+		return hex.toString();
+	}
+
+	// the lightest valid tree of the log, null when there is none
+	synchronized KTree best() {
+		return best;
+	}
+
+	// writes the tree when it is a valid k-tree lighter than the ones in the
+	// log, returns whether it did; a failed write is kept for close()
+	synchronized boolean append(Source source, KTree tree) {
+		if (!validator.valid(tree)) {
+			rejected++;
+			lastError = source + ": " + validator.error;
+			System.out.println(file + ": rejected a tree, " + lastError);
+			return false;
+		}
+		if (best != null && tree.weight >= best.weight || failure != null)
+			return false;
+
+		buffer.clear().position(8);
+		buffer.put((byte) source.ordinal()).putLong(System.currentTimeMillis()).putLong(tree.weight);
+		putSorted(tree.vertices);
+		putSorted(tree.edges);
+		int payload = buffer.position() - 8;
+		crc.reset();
+		crc.update(buffer.array(), 8, payload);
+		buffer.putInt(0, payload).putInt(4, (int) crc.getValue()).flip();
+		try {
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		} catch (IOException e) {
+			failure = e;
+			return false;
+		}
+		best = tree;
+		appended++;
+		return true;
+	}
+
+	private void putSorted(int[] values) {
+		System.arraycopy(values, 0, sorted, 0, values.length);
+		Arrays.sort(sorted, 0, values.length);
+		int previous = 0;
+		for (int i = 0; i < values.length; i++) {
+			BinaryInstance.putVarint(buffer, sorted[i] - previous);
+			previous = sorted[i];
+		}
+	}
+
+	// rejected counts the trees append() refused and the records dropped at open
+	String report() {
+		return appended + " trees logged, " + rejected + " rejected" + (lastError == null ? "" : " (" + lastError + ")");
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+		if (failure != null)
+			throw failure;
+	}
+
+	// the records of a log, up to the first that is cut or corrupt
+	static List<Record> read(String file) throws IOException {
+		List<Record> records = new ArrayList<>();
+		try (FileChannel in = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+			scan(load(in, file), records);
+		}
+		return records;
+	}
+
+	// the whole log, its header checked
+	private static ByteBuffer load(FileChannel in, String file) throws IOException {
+		long size = in.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException(file + ": " + size + " bytes is too large to be read at once");
+		if (size < HEADER_BYTES)
+			throw new IOException(file + ": truncated header");
+		ByteBuffer content = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		while (content.hasRemaining() && in.read(content, content.position()) > 0)
+			;
+		content.flip();
+		if (content.remaining() < HEADER_BYTES || content.getInt(0) != MAGIC)
+			throw new IOException(file + ": not a solution log");
+		return content;
+	}
+
+	// adds the records after the header, returns where the last complete one ends
+	private static long scan(ByteBuffer content, List<Record> records) throws IOException {
+		int k = content.getInt(12);
+		content.position(HEADER_BYTES);
+		Source[] sources = Source.values();
+		CRC32 crc = new CRC32();
+		int end = HEADER_BYTES;
+		while (content.remaining() >= 8) {
+			int payload = content.getInt();
+			int checksum = content.getInt();
+			if (payload < FIXED_BYTES || payload > content.remaining())
+				break;
+			ByteBuffer record = content.slice().limit(payload).order(ByteOrder.LITTLE_ENDIAN);
+			crc.reset();
+			crc.update(record.duplicate());
+			int source = record.get();
+			if ((int) crc.getValue() != checksum || source < 0 || source >= sources.length)
+				break;
+			long millis = record.getLong();
+			long weight = record.getLong();
+			int[] vertices = getSorted(record, k);
+			int[] edges = getSorted(record, Math.max(k - 1, 0));
+			records.add(new Record(sources[source], millis, new KTree(vertices, edges, weight)));
+			content.position(content.position() + payload);
+			end = content.position();
+		}
+		return end;
+	}
+
+	private static int[] getSorted(ByteBuffer buffer, int count) throws IOException {
+		int[] values = new int[count];
+		int previous = 0;
+		for (int i = 0; i < count; i++)
+			values[i] = previous += BinaryInstance.getVarint(buffer);
+		return values;
+	}
+
+	// key=value arguments: file=log.ksl instance=1 (optional, to validate the
+	// trees); prints the records as CSV
+	public static void main(String[] args) throws IOException {
+		String file = null;
+		String instance = null;
+		Map<String, String[]> options = ExperimentScheduler.options(args, "file", "instance");
+		for (Map.Entry<String, String[]> option : options.entrySet()) {
+			String key = option.getKey();
+			String value = String.join(",", option.getValue());
+			if (key.equals("file"))
+				file = value;
+			else if (key.equals("instance"))
+				instance = ExperimentScheduler.instanceFile(value);
+		}
+		if (file == null)
+			throw new IllegalArgumentException("file= is required");
+
+		List<Record> records = read(file);
+		TreeValidator validator = null;
+		if (instance != null && !records.isEmpty())
+			validator = new TreeValidator(InstanceLoader.load(instance), records.get(0).tree.vertices.length);
+		System.out.println("source,millis,weight,valid,vertices");
+		for (Record record : records) {
+			String valid = validator == null ? "" : validator.valid(record.tree) ? "true" : validator.error;
+			StringBuilder vertices = new StringBuilder();
+			for (int vertex : record.tree.vertices)
+				vertices.append(vertices.length() == 0 ? "" : " ").append(vertex);
+			System.out.println(record.source + "," + record.millis + "," + record.tree.weight + "," + valid + ","
+					+ vertices);
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+import java.util.Arrays;
+
+// Solver independent MIP in primitive arrays: column bounds, types and
+// objective, and the rows in CSR form (rowStart, rowIndex, value) with a
+// sense and a right hand side each.
+//
+// Rows are emitted one at a time: addTerm() appends to the open row and
+// addRow() closes it. The generators mark each constraint family with
+// beginFamily(), which keeps the columns, rows, nonzeros and time it took.
+public class SparseModel {
+
+	static final char CONTINUOUS = 'C';
+	static final char BINARY = 'B';
+	static final char INTEGER = 'I';
+
+	static final char EQUAL = 'E';
+	static final char LESS_EQUAL = 'L';
+	static final char GREATER_EQUAL = 'G';
+
+	// first column of each block of variables, -1 if the model has no such block
+	int xStart = -1;
+	int yStart = -1;
+	int uStart = -1;
+	int fStart = -1;
+	// multi-commodity flows: block i of numberOfArcs flow columns from fStart on
+	// carries commodity commodities[i]; null when f is a single aggregated flow
+	int[] commodities;
+
+	int numberOfColumns;
+	double[] lowerBound;
+	double[] upperBound;
+	double[] objective;
+	char[] type;
+
+	int numberOfRows;
+	int numberOfNonZeros;
+	int[] rowStart;
+	int[] rowIndex;
+	double[] value;
+	char[] sense;
+	double[] rhs;
+
+	// per family: what was emitted while it was open, summed when it is reopened
+	int numberOfFamilies;
+	String[] familyName = new String[16];
+	int[] familyColumns = new int[16];
+	int[] familyRows = new int[16];
+	long[] familyNonZeros = new long[16];
+	long[] familyNanos = new long[16];
+
+	private int openFamily = -1;
+	private int openColumns;
+	private int openRows;
+	private int openNonZeros;
+	private long openTime;
+
+	SparseModel(int columnCapacity, int rowCapacity, int nonZeroCapacity) {
+		lowerBound = new double[Math.max(columnCapacity, 1)];
+		upperBound = new double[lowerBound.length];
+		objective = new double[lowerBound.length];
+		type = new char[lowerBound.length];
+
+		rowStart = new int[Math.max(rowCapacity, 1) + 1];
+		sense = new char[rowStart.length - 1];
+		rhs = new double[rowStart.length - 1];
+
+		rowIndex = new int[Math.max(nonZeroCapacity, 1)];
+		value = new double[rowIndex.length];
+	}
+
+	// returns the index of the first of the new columns
+	int addColumns(int count, double lb, double ub, char columnType) {
+		int first = numberOfColumns;
+		if (first + count > lowerBound.length) {
+			int capacity = Math.max(first + count, lowerBound.length * 2);
+			lowerBound = Arrays.copyOf(lowerBound, capacity);
+			upperBound = Arrays.copyOf(upperBound, capacity);
+			objective = Arrays.copyOf(objective, capacity);
+			type = Arrays.copyOf(type, capacity);
+		}
+		Arrays.fill(lowerBound, first, first + count, lb);
+		Arrays.fill(upperBound, first, first + count, ub);
+		Arrays.fill(type, first, first + count, columnType);
+		numberOfColumns += count;
+		return first;
+	}
+
+	void setObjective(int column, double coefficient) {
+		objective[column] = coefficient;
+	}
+
+	void addTerm(int column, double coefficient) {
+		if (numberOfNonZeros == rowIndex.length) {
+			rowIndex = Arrays.copyOf(rowIndex, rowIndex.length * 2);
+			value = Arrays.copyOf(value, rowIndex.length);
+		}
+		rowIndex[numberOfNonZeros] = column;
+		value[numberOfNonZeros] = coefficient;
+		numberOfNonZeros++;
+	}
+
+	// closes the row made of the terms added since the last call
+	int addRow(char rowSense, double rightHandSide) {
+		if (numberOfRows == sense.length) {
+			rowStart = Arrays.copyOf(rowStart, sense.length * 2 + 1);
+			sense = Arrays.copyOf(sense, sense.length * 2);
+			rhs = Arrays.copyOf(rhs, sense.length);
+		}
+		sense[numberOfRows] = rowSense;
+		rhs[numberOfRows] = rightHandSide;
+		numberOfRows++;
+		rowStart[numberOfRows] = numberOfNonZeros;
+		return numberOfRows - 1;
+	}
+
+	// what is emitted from now on is counted for the named family
+	void beginFamily(String name) {
+		endFamily();
+		int family = 0;
+		while (family < numberOfFamilies && !familyName[family].equals(name))
+			family++;
+		if (family == numberOfFamilies) {
+			if (family == familyName.length) {
+				familyName = Arrays.copyOf(familyName, family * 2);
+				familyColumns = Arrays.copyOf(familyColumns, family * 2);
+				familyRows = Arrays.copyOf(familyRows, family * 2);
+				familyNonZeros = Arrays.copyOf(familyNonZeros, family * 2);
+				familyNanos = Arrays.copyOf(familyNanos, family * 2);
+			}
+			familyName[family] = name;
+			numberOfFamilies++;
+		}
+		openFamily = family;
+		openColumns = numberOfColumns;
+		openRows = numberOfRows;
+		openNonZeros = numberOfNonZeros;
+		openTime = System.nanoTime();
+	}
+
+	void endFamily() {
+		if (openFamily < 0)
+			return;
+		familyNanos[openFamily] += System.nanoTime() - openTime;
+		familyColumns[openFamily] += numberOfColumns - openColumns;
+		familyRows[openFamily] += numberOfRows - openRows;
+		familyNonZeros[openFamily] += numberOfNonZeros - openNonZeros;
+		openFamily = -1;
+	}
+
+	int rowLength(int row) {
+		return rowStart[row + 1] - rowStart[row];
+	}
+
+	// drops the spare capacity left by the growth policy
+	void trim() {
+		endFamily();
+		lowerBound = Arrays.copyOf(lowerBound, numberOfColumns);
+		upperBound = Arrays.copyOf(upperBound, numberOfColumns);
+		objective = Arrays.copyOf(objective, numberOfColumns);
+		type = Arrays.copyOf(type, numberOfColumns);
+		rowStart = Arrays.copyOf(rowStart, numberOfRows + 1);
+		sense = Arrays.copyOf(sense, numberOfRows);
+		rhs = Arrays.copyOf(rhs, numberOfRows);
+		rowIndex = Arrays.copyOf(rowIndex, numberOfNonZeros);
+		value = Arrays.copyOf(value, numberOfNonZeros);
+	}
+
+	@Override
+	public String toString() {
+		return "columns = " + numberOfColumns + "  rows = " + numberOfRows + "  nonzeros = " + numberOfNonZeros;
+	}
+
+}
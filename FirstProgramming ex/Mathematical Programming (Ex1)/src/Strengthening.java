@@ -0,0 +1,63 @@
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Optional valid inequalities that tighten the LP relaxation of the
+// formulations. All of them hold for the solutions MipStart builds: u is the
+// depth of a vertex and f the size of the subtree below an arc.
+public enum Strengthening {
+
+	// MTZ (8) lifted with the reverse arc, Desrochers-Laporte style:
+	// u_i - u_j + (k + 1) x_ij + (k - 1) x_ji <= k
+	LIFTED_MTZ,
+
+	// SCF (21) with capacity k - 1 on the arcs that do not leave the root
+	FLOW_CAPACITY,
+
+	// x_ij <= y_i on the arcs that do not leave the root
+	ARC_LINKING,
+
+	// x_ij + x_ji <= y_i and x_ij + x_ji <= y_j on every edge between two vertices
+	EDGE_LINKING;
+
+	static final Set<Strengthening> NONE = Collections.unmodifiableSet(EnumSet.noneOf(Strengthening.class));
+
+	boolean appliesTo(Formulation formulation) {
+		if (this == LIFTED_MTZ)
+			return formulation == Formulation.MTZ;
+		if (this == FLOW_CAPACITY)
+			return formulation == Formulation.SCF;
+		return true;
+	}
+
+	// "none", "all" or names joined by '+', e.g. lifted_mtz+arc_linking
+	static Set<Strengthening> parse(String text) {
+		if (text.equalsIgnoreCase("none"))
+			return NONE;
+		if (text.equalsIgnoreCase("all"))
+			return EnumSet.allOf(Strengthening.class);
+		Set<Strengthening> set = EnumSet.noneOf(Strengthening.class);
+		for (String name : text.split("\\+"))
+			set.add(valueOf(name.toUpperCase()));
+		return set;
+	}
+
+	// the members of set that change the model of formulation
+	static Set<Strengthening> applicable(Set<Strengthening> set, Formulation formulation) {
+		Set<Strengthening> applicable = EnumSet.noneOf(Strengthening.class);
+		for (Strengthening strengthening : set)
+			if (strengthening.appliesTo(formulation))
+				applicable.add(strengthening);
+		return applicable;
+	}
+
+	static String toString(Set<Strengthening> set) {
+		if (set.isEmpty())
+			return "none";
+		StringBuilder text = new StringBuilder();
+		for (Strengthening strengthening : set)
+			text.append(text.length() == 0 ? "" : "+").append(strengthening.name().toLowerCase());
+		return text.toString();
+	}
+
+}
@@ -0,0 +1,38 @@
+// In-memory backend that only checks the model and keeps its sizes, used to
+// test and time the model generation without CPLEX.
+public class StubBackend implements ModelBackend {
+
+	int numberOfColumns;
+	int numberOfRows;
+	int numberOfNonZeros;
+	double checksum;
+
+	@Override
+	public void load(SparseModel model) {
+		for (int column = 0; column < model.numberOfColumns; column++)
+			if (model.lowerBound[column] > model.upperBound[column])
+				throw new IllegalStateException("empty domain for column " + column);
+
+		for (int row = 0; row < model.numberOfRows; row++) {
+			if (model.rowStart[row] > model.rowStart[row + 1])
+				throw new IllegalStateException("bad row start for row " + row);
+			for (int pos = model.rowStart[row]; pos < model.rowStart[row + 1]; pos++) {
+				int column = model.rowIndex[pos];
+				if (column < 0 || column >= model.numberOfColumns)
+					throw new IllegalStateException("row " + row + " refers to missing column " + column);
+				checksum += model.value[pos] * (column + 1);
+			}
+			checksum += model.rhs[row];
+		}
+
+		numberOfColumns += model.numberOfColumns;
+		numberOfRows += model.numberOfRows;
+		numberOfNonZeros += model.numberOfNonZeros;
+	}
+
+	@Override
+	public String toString() {
+		return "columns = " + numberOfColumns + "  rows = " + numberOfRows + "  nonzeros = " + numberOfNonZeros;
+	}
+
+}
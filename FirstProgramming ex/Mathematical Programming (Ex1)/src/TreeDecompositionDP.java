@@ -0,0 +1,583 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Exact k-cardinality tree by dynamic programming over a tree decomposition
+// of the graph without the root 0, for forests and graphs of small treewidth,
+// where it answers without CPLEX.
+//
+// The decomposition comes from a min-degree elimination ordering: the bag of
+// v is v and its neighbours still alive when v is eliminated, and its parent
+// is the first of them to be eliminated. It is given up as soon as a bag
+// would exceed MAX_WIDTH + 1 vertices.
+//
+// A DP state of a bag says which bag vertices are selected and how the
+// selected ones are split into the components built so far (canonical labels,
+// 4 bits per bag position), and holds the cheapest cost for every count of
+// selected vertices already forgotten. Node v joins the tables of its
+// children into its bag, chooses the edges from v to the selected bag
+// vertices (those eliminated after v), and forgets v. A component is closed
+// when its last vertex is forgotten: that is a whole k-tree if it is the only
+// one and has k vertices. The counts make the joins min-plus convolutions,
+// bounded by the subtree sizes.
+//
+// The optimal vertex set is recovered by recomputing the stages of the nodes
+// top down and matching costs; the tree is then its minimum spanning tree.
+// Weights must be nonnegative, so that the cheapest connected subgraph on k
+// vertices is a tree.
+public class TreeDecompositionDP {
+
+	static final int MAX_WIDTH = 3;
+	// the outgoing tables kept for the reconstruction, in costs, before giving up
+	static final long MAX_ENTRIES = 1L << 24;
+
+	private static final long INFINITY = Long.MAX_VALUE;
+
+	// per-count costs of the states of one stage; all rows have counts 0..cap
+	private static final class Table {
+		final int cap;
+		final HashMap<Long, long[]> rows = new HashMap<>();
+
+		Table(int cap) {
+			this.cap = cap;
+		}
+
+		long[] row(long state) {
+			long[] row = rows.get(state);
+			if (row == null) {
+				row = new long[cap + 1];
+				Arrays.fill(row, INFINITY);
+				rows.put(state, row);
+			}
+			return row;
+		}
+	}
+
+	private final Graph graph;
+	private final int k;
+
+	int width = -1;
+	private int[][] bag; // sorted, v included
+	private int[][] outgoingBag; // the bag without v
+	private int[] parent;
+	private int[][] children;
+	private int[] order;
+	private Table[] outgoing;
+	private long entries;
+
+	private long bestCost = INFINITY;
+	private int bestNode = -1;
+	private long bestState;
+	private int bestCount;
+
+	private TreeDecompositionDP(Graph graph, int k) {
+		this.graph = graph;
+		this.k = k;
+	}
+
+	// the optimal k-tree, or null if the graph is too wide or too large for the
+	// DP, has negative weights, or has no k-tree at all
+	static KTree solve(Graph graph, int k) {
+		if (k < 1 || k > graph.numberOfNodes - 1)
+			return null;
+		for (int arc = 0; arc < graph.numberOfArcs; arc++)
+			if (graph.weight[arc] < 0)
+				return null;
+		TreeDecompositionDP dp = new TreeDecompositionDP(graph, k);
+		if (!dp.decompose(MAX_WIDTH) || !dp.run() || dp.bestNode < 0)
+			return null;
+		return dp.reconstruct();
+	}
+
+	// min-degree elimination of the real vertices, false if some bag would be too large
+	private boolean decompose(int maxWidth) {
+		int n = graph.numberOfNodes;
+		int[][] adjacent = new int[n][];
+		int[] size = new int[n];
+		int[] mark = new int[n];
+		Arrays.fill(mark, -1);
+		for (int node = 1; node < n; node++) {
+			int[] list = new int[graph.outDegree(node)];
+			for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+				int next = graph.head[graph.outArcs[pos]];
+				if (next != node && mark[next] != node) {
+					mark[next] = node;
+					list[size[node]++] = next;
+				}
+			}
+			adjacent[node] = list;
+		}
+		// the treewidth is at least the smallest degree
+		int smallest = Integer.MAX_VALUE;
+		for (int node = 1; node < n; node++)
+			smallest = Math.min(smallest, size[node]);
+		if (n > 1 && smallest > maxWidth)
+			return false;
+
+		HashSet<Long> edges = new HashSet<>();
+		for (int node = 1; node < n; node++)
+			for (int i = 0; i < size[node]; i++)
+				edges.add(key(node, adjacent[node][i]));
+
+		int[] degree = Arrays.copyOf(size, n);
+		boolean[] eliminated = new boolean[n];
+		int[] position = new int[n];
+		order = new int[n - 1];
+		bag = new int[n][];
+		PriorityQueue<Long> queue = new PriorityQueue<>();
+		for (int node = 1; node < n; node++)
+			queue.add((long) degree[node] << 32 | node);
+
+		int eliminatedCount = 0;
+		int[] live = new int[maxWidth + 1];
+		while (!queue.isEmpty()) {
+			long top = queue.poll();
+			int node = (int) top;
+			if (eliminated[node] || (int) (top >>> 32) != degree[node])
+				continue;
+			if (degree[node] > maxWidth)
+				return false;
+
+			int count = 0;
+			for (int i = 0; i < size[node]; i++)
+				if (!eliminated[adjacent[node][i]])
+					live[count++] = adjacent[node][i];
+			int[] nodeBag = Arrays.copyOf(live, count + 1);
+			nodeBag[count] = node;
+			Arrays.sort(nodeBag);
+			bag[node] = nodeBag;
+			eliminated[node] = true;
+			position[node] = eliminatedCount;
+			order[eliminatedCount++] = node;
+			width = Math.max(width, count);
+
+			// the live neighbours become a clique
+			for (int i = 0; i < count; i++)
+				degree[live[i]]--;
+			for (int i = 0; i < count; i++)
+				for (int j = i + 1; j < count; j++) {
+					int a = live[i], b = live[j];
+					if (edges.add(key(a, b))) {
+						if (size[a] == adjacent[a].length)
+							adjacent[a] = Arrays.copyOf(adjacent[a], Math.max(4, size[a] * 2));
+						if (size[b] == adjacent[b].length)
+							adjacent[b] = Arrays.copyOf(adjacent[b], Math.max(4, size[b] * 2));
+						adjacent[a][size[a]++] = b;
+						adjacent[b][size[b]++] = a;
+						degree[a]++;
+						degree[b]++;
+					}
+				}
+			for (int i = 0; i < count; i++)
+				queue.add((long) degree[live[i]] << 32 | live[i]);
+		}
+
+		parent = new int[n];
+		int[] childCount = new int[n];
+		outgoingBag = new int[n][];
+		Arrays.fill(parent, -1);
+		for (int node : order) {
+			int[] nodeBag = bag[node];
+			int[] rest = new int[nodeBag.length - 1];
+			for (int i = 0, j = 0; i < nodeBag.length; i++)
+				if (nodeBag[i] != node)
+					rest[j++] = nodeBag[i];
+			outgoingBag[node] = rest;
+			for (int other : rest)
+				if (parent[node] < 0 || position[other] < position[parent[node]])
+					parent[node] = other;
+			if (parent[node] >= 0)
+				childCount[parent[node]]++;
+		}
+		children = new int[n][];
+		for (int node = 0; node < n; node++)
+			children[node] = new int[childCount[node]];
+		Arrays.fill(childCount, 0);
+		for (int node : order)
+			if (parent[node] >= 0)
+				children[parent[node]][childCount[parent[node]]++] = node;
+		return true;
+	}
+
+	// the forward pass, children before parents; false if the tables grow too large
+	private boolean run() {
+		outgoing = new Table[graph.numberOfNodes];
+		for (int node : order) {
+			Table[] stages = stages(node);
+			Table table = forget(node, stages[stages.length - 1], true);
+			outgoing[node] = table;
+			entries += (long) table.rows.size() * (table.cap + 1);
+			if (entries > MAX_ENTRIES)
+				return false;
+		}
+		return true;
+	}
+
+	// the tables of node v: the empty selection of its bag, one more joined child
+	// per stage, and last the choice of the edges from v
+	private Table[] stages(int node) {
+		int[] nodeBag = bag[node];
+		int b = nodeBag.length;
+		Table[] stages = new Table[children[node].length + 2];
+
+		Table base = new Table(0);
+		int[] labels = new int[b];
+		for (int mask = 0; mask < 1 << b; mask++) {
+			if (Integer.bitCount(mask) > k)
+				continue;
+			for (int p = 0, label = 1; p < b; p++)
+				labels[p] = (mask >>> p & 1) != 0 ? label++ : 0;
+			base.row(encode(labels, b))[0] = 0;
+		}
+		stages[0] = base;
+
+		for (int i = 0; i < children[node].length; i++) {
+			int child = children[node][i];
+			stages[i + 1] = join(stages[i], b, outgoing[child], positions(outgoingBag[child], nodeBag));
+		}
+		stages[stages.length - 1] = chooseEdges(node, stages[stages.length - 2]);
+		return stages;
+	}
+
+	private Table join(Table table, int b, Table child, int[] map) {
+		Table result = new Table(Math.min(k, table.cap + child.cap));
+		int[] labels = new int[b];
+		int[] childLabels = new int[map.length];
+		for (Map.Entry<Long, long[]> t : table.rows.entrySet())
+			for (Map.Entry<Long, long[]> c : child.rows.entrySet()) {
+				long state = joinState(t.getKey(), c.getKey(), b, map, labels, childLabels);
+				if (state < 0)
+					continue;
+				int selected = selected(state, b);
+				long[] row = result.row(state);
+				long[] tCosts = t.getValue();
+				long[] cCosts = c.getValue();
+				for (int x = 0; x < tCosts.length; x++) {
+					if (tCosts[x] == INFINITY)
+						continue;
+					for (int y = 0; y < cCosts.length && x + y + selected <= k; y++)
+						if (cCosts[y] != INFINITY && tCosts[x] + cCosts[y] < row[x + y])
+							row[x + y] = tCosts[x] + cCosts[y];
+				}
+			}
+		return result;
+	}
+
+	// the state of the bag after merging the components of a child state, -1 if they disagree on the selection
+	private static long joinState(long state, long childState, int b, int[] map, int[] labels, int[] childLabels) {
+		decode(state, b, labels);
+		decode(childState, map.length, childLabels);
+		for (int j = 0; j < map.length; j++)
+			if ((childLabels[j] != 0) != (labels[map[j]] != 0))
+				return -1;
+		for (int j = 0; j < map.length; j++)
+			for (int i = 0; i < j; i++)
+				if (childLabels[j] != 0 && childLabels[i] == childLabels[j]) {
+					merge(labels, b, labels[map[j]], labels[map[i]]);
+					break;
+				}
+		return encode(labels, b);
+	}
+
+	private Table chooseEdges(int node, Table table) {
+		int[] nodeBag = bag[node];
+		int b = nodeBag.length;
+		int self = Arrays.binarySearch(nodeBag, node);
+		long[] weight = edgeWeights(node, nodeBag);
+
+		Table result = new Table(table.cap);
+		int[] labels = new int[b];
+		long[] cost = new long[1];
+		for (Map.Entry<Long, long[]> t : table.rows.entrySet()) {
+			long state = t.getKey();
+			int subsets = label(state, self) == 0 ? 1 : 1 << b;
+			for (int subset = 0; subset < subsets; subset++) {
+				long next = edgeChoice(state, b, self, weight, subset, labels, cost);
+				if (next < 0)
+					continue;
+				long[] row = result.row(next);
+				long[] costs = t.getValue();
+				for (int x = 0; x < costs.length; x++)
+					if (costs[x] != INFINITY && costs[x] + cost[0] < row[x])
+						row[x] = costs[x] + cost[0];
+			}
+		}
+		return result;
+	}
+
+	// the state after adding the edges from self to the bag positions in subset,
+	// -1 if one of them is missing, leads to an unselected vertex or closes a cycle
+	private static long edgeChoice(long state, int b, int self, long[] weight, int subset, int[] labels, long[] cost) {
+		decode(state, b, labels);
+		cost[0] = 0;
+		for (int p = 0; p < b; p++) {
+			if ((subset >>> p & 1) == 0)
+				continue;
+			if (p == self || weight[p] == INFINITY || labels[p] == 0 || labels[p] == labels[self])
+				return -1;
+			merge(labels, b, labels[p], labels[self]);
+			cost[0] += weight[p];
+		}
+		return encode(labels, b);
+	}
+
+	// the cheapest edge from node to every bag position, INFINITY if there is none
+	private long[] edgeWeights(int node, int[] nodeBag) {
+		long[] weight = new long[nodeBag.length];
+		Arrays.fill(weight, INFINITY);
+		for (int pos = graph.outStart[node]; pos < graph.outStart[node + 1]; pos++) {
+			int arc = graph.outArcs[pos];
+			int p = Arrays.binarySearch(nodeBag, graph.head[arc]);
+			if (p >= 0 && graph.head[arc] != node)
+				weight[p] = Math.min(weight[p], graph.weight[arc]);
+		}
+		return weight;
+	}
+
+	// drops v from the bag, counting it if selected; a component closed by v is
+	// recorded as a candidate k-tree when it is the only one
+	private Table forget(int node, Table table, boolean record) {
+		int[] nodeBag = bag[node];
+		int b = nodeBag.length;
+		int self = Arrays.binarySearch(nodeBag, node);
+		Table result = new Table(Math.min(k, table.cap + 1));
+		int[] labels = new int[b];
+		for (Map.Entry<Long, long[]> t : table.rows.entrySet()) {
+			long state = t.getKey();
+			long[] costs = t.getValue();
+			int shift = forgetShift(state, b, self, labels);
+			if (shift < 0) {
+				if (record && shift == CLOSED)
+					for (int x = 0; x < costs.length; x++)
+						if (x + 1 == k && costs[x] < bestCost) {
+							bestCost = costs[x];
+							bestNode = node;
+							bestState = state;
+							bestCount = x;
+						}
+				continue;
+			}
+			long[] row = result.row(forgetState(state, b, self, labels));
+			for (int x = 0; x + shift <= result.cap && x < costs.length; x++)
+				if (costs[x] < row[x + shift])
+					row[x + shift] = costs[x];
+		}
+		return result;
+	}
+
+	private static final int CLOSED = -1;
+	private static final int DISCONNECTED = -2;
+
+	// how much forgetting self adds to the count, or why the state ends there
+	private static int forgetShift(long state, int b, int self, int[] labels) {
+		decode(state, b, labels);
+		if (labels[self] == 0)
+			return 0;
+		boolean shared = false, others = false;
+		for (int p = 0; p < b; p++)
+			if (p != self && labels[p] != 0) {
+				others = true;
+				shared |= labels[p] == labels[self];
+			}
+		if (shared)
+			return 1;
+		return others ? DISCONNECTED : CLOSED;
+	}
+
+	private static long forgetState(long state, int b, int self, int[] labels) {
+		decode(state, b, labels);
+		for (int p = self; p + 1 < b; p++)
+			labels[p] = labels[p + 1];
+		return encode(labels, b - 1);
+	}
+
+	// the selected vertices of the best closure, spanned by a minimum tree
+	private KTree reconstruct() {
+		List<Integer> vertices = new ArrayList<>();
+		ArrayDeque<long[]> targets = new ArrayDeque<>(); // node, state, count, cost, at the edge stage (1) or outgoing (0)
+		targets.push(new long[] { bestNode, bestState, bestCount, bestCost, 1 });
+
+		int[] labels = new int[MAX_WIDTH + 2];
+		int[] childLabels = new int[MAX_WIDTH + 1];
+		long[] cost = new long[1];
+		while (!targets.isEmpty()) {
+			long[] target = targets.pop();
+			int node = (int) target[0];
+			long state = target[1];
+			int count = (int) target[2];
+			long value = target[3];
+			int[] nodeBag = bag[node];
+			int b = nodeBag.length;
+			int self = Arrays.binarySearch(nodeBag, node);
+			Table[] stages = stages(node);
+			Table edges = stages[stages.length - 1];
+
+			// outgoing -> edge stage
+			if (target[4] == 0) {
+				boolean found = false;
+				for (Map.Entry<Long, long[]> e : edges.rows.entrySet()) {
+					int shift = forgetShift(e.getKey(), b, self, labels);
+					if (shift < 0 || forgetState(e.getKey(), b, self, labels) != state || count - shift < 0
+							|| count - shift >= e.getValue().length || e.getValue()[count - shift] != value)
+						continue;
+					state = e.getKey();
+					count -= shift;
+					found = true;
+					break;
+				}
+				if (!found)
+					throw new IllegalStateException("no predecessor for the outgoing state of " + node);
+			}
+			if (label(state, self) != 0)
+				vertices.add(node);
+
+			// edge stage -> last join
+			Table joined = stages[stages.length - 2];
+			long[] weight = edgeWeights(node, nodeBag);
+			boolean found = false;
+			for (Map.Entry<Long, long[]> t : joined.rows.entrySet()) {
+				long[] costs = t.getValue();
+				if (count >= costs.length || costs[count] == INFINITY)
+					continue;
+				int subsets = label(t.getKey(), self) == 0 ? 1 : 1 << b;
+				for (int subset = 0; subset < subsets && !found; subset++)
+					if (edgeChoice(t.getKey(), b, self, weight, subset, labels, cost) == state
+							&& costs[count] + cost[0] == value) {
+						state = t.getKey();
+						value = costs[count];
+						found = true;
+					}
+				if (found)
+					break;
+			}
+			if (!found)
+				throw new IllegalStateException("no predecessor for the edge choice of " + node);
+
+			// joins, last child first
+			for (int i = children[node].length - 1; i >= 0; i--) {
+				int child = children[node][i];
+				int[] map = positions(outgoingBag[child], nodeBag);
+				Table before = stages[i];
+				Table childTable = outgoing[child];
+				found = false;
+				search: for (Map.Entry<Long, long[]> t : before.rows.entrySet())
+					for (Map.Entry<Long, long[]> c : childTable.rows.entrySet()) {
+						if (joinState(t.getKey(), c.getKey(), b, map, labels, childLabels) != state)
+							continue;
+						long[] tCosts = t.getValue();
+						long[] cCosts = c.getValue();
+						for (int x = Math.max(0, count - childTable.cap); x <= Math.min(count, before.cap); x++)
+							if (tCosts[x] != INFINITY && cCosts[count - x] != INFINITY
+									&& tCosts[x] + cCosts[count - x] == value) {
+								targets.push(new long[] { child, c.getKey(), count - x, cCosts[count - x], 0 });
+								state = t.getKey();
+								value = tCosts[x];
+								count = x;
+								found = true;
+								break search;
+							}
+					}
+				if (!found)
+					throw new IllegalStateException("no predecessor for child " + child + " of " + node);
+			}
+		}
+
+		int[] selected = new int[vertices.size()];
+		for (int i = 0; i < selected.length; i++)
+			selected[i] = vertices.get(i);
+		KTree tree = spanningTree(selected);
+		if (tree == null || tree.weight != bestCost)
+			throw new IllegalStateException("reconstructed tree does not match the optimum " + bestCost);
+		return tree;
+	}
+
+	// Kruskal on the subgraph induced by the vertices, null if it is disconnected
+	private KTree spanningTree(int[] vertices) {
+		boolean[] inSet = new boolean[graph.numberOfNodes];
+		for (int vertex : vertices)
+			inSet[vertex] = true;
+		List<Integer> candidates = new ArrayList<>();
+		for (int edge = 0; edge < graph.numberOfEdges; edge++)
+			if (graph.reverse[edge] != -1 && inSet[graph.tail[edge]] && inSet[graph.head[edge]])
+				candidates.add(edge);
+		candidates.sort((a, b) -> Integer.compare(graph.weight[a], graph.weight[b]));
+
+		int[] root = new int[graph.numberOfNodes];
+		for (int vertex : vertices)
+			root[vertex] = vertex;
+		int[] edges = new int[Math.max(vertices.length - 1, 0)];
+		int count = 0;
+		for (int edge : candidates) {
+			int a = find(root, graph.tail[edge]), b = find(root, graph.head[edge]);
+			if (a != b && count < edges.length) {
+				root[a] = b;
+				edges[count++] = edge;
+			}
+		}
+		if (count != edges.length)
+			return null;
+		return new KTree(vertices, edges, KTree.weight(graph, edges));
+	}
+
+	private static int find(int[] root, int node) {
+		while (root[node] != node)
+			node = root[node] = root[root[node]];
+		return node;
+	}
+
+	// where the vertices of a child bag sit in the parent bag
+	private static int[] positions(int[] childBag, int[] nodeBag) {
+		int[] map = new int[childBag.length];
+		for (int j = 0; j < childBag.length; j++)
+			map[j] = Arrays.binarySearch(nodeBag, childBag[j]);
+		return map;
+	}
+
+	private static long key(int a, int b) {
+		return (long) Math.min(a, b) << 32 | Math.max(a, b);
+	}
+
+	private static int label(long state, int p) {
+		return (int) (state >>> 4 * p & 15);
+	}
+
+	private static int selected(long state, int b) {
+		int selected = 0;
+		for (int p = 0; p < b; p++)
+			if (label(state, p) != 0)
+				selected++;
+		return selected;
+	}
+
+	private static void decode(long state, int b, int[] labels) {
+		for (int p = 0; p < b; p++)
+			labels[p] = label(state, p);
+	}
+
+	// labels renumbered by first appearance, so that equal partitions get equal states
+	private static long encode(int[] labels, int b) {
+		int[] renumber = new int[2 * b + 2];
+		long state = 0;
+		for (int p = 0, next = 1; p < b; p++)
+			if (labels[p] != 0) {
+				if (renumber[labels[p]] == 0)
+					renumber[labels[p]] = next++;
+				state |= (long) renumber[labels[p]] << 4 * p;
+			}
+		return state;
+	}
+
+	private static void merge(int[] labels, int b, int from, int into) {
+		if (from == into)
+			return;
+		for (int p = 0; p < b; p++)
+			if (labels[p] == from)
+				labels[p] = into;
+	}
+
+}
@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+// Checks that a KTree is a k-cardinality tree of the graph: k distinct real
+// vertices and k - 1 real edges between them without a cycle, which with the
+// root arc makes the k edges on k + 1 vertices of the models. The weight is
+// recomputed from the graph and must match the recorded one.
+//
+// The union find (union by size, path halving) only touches the tree's
+// vertices: its arrays are allocated once and a stamp tells which entries
+// belong to the current check, so a check costs O(k alpha(k)) whatever n.
+// A validator is safe for concurrent use, such as by the CPLEX threads:
+// check() is synchronized.
+public class TreeValidator {
+
+	final Graph graph;
+	final int k;
+
+	private final int[] parent;
+	private final int[] size;
+	private final int[] stamp;
+	private int current;
+
+	// why the last rejected tree is not a k-tree
+	String error;
+
+	TreeValidator(Graph graph, int k) {
+		this.graph = graph;
+		this.k = k;
+		parent = new int[graph.numberOfNodes];
+		size = new int[graph.numberOfNodes];
+		stamp = new int[graph.numberOfNodes];
+	}
+
+	// the weight of the tree recomputed, -1 with error set when it is not a k-tree
+	synchronized long check(KTree tree) {
+		if (tree == null)
+			return reject("no tree");
+		if (tree.vertices.length != k || tree.edges.length != Math.max(k - 1, 0))
+			return reject(tree.vertices.length + " vertices and " + tree.edges.length + " edges for k = " + k);
+		if (++current == Integer.MAX_VALUE) {
+			Arrays.fill(stamp, 0);
+			current = 1;
+		}
+
+		for (int vertex : tree.vertices) {
+			if (vertex < 1 || vertex >= graph.numberOfNodes)
+				return reject("vertex " + vertex + " is not in the graph");
+			if (stamp[vertex] == current)
+				return reject("vertex " + vertex + " is repeated");
+			stamp[vertex] = current;
+			parent[vertex] = vertex;
+			size[vertex] = 1;
+		}
+
+		// k - 1 edges without a cycle on k vertices connect them
+		long weight = 0;
+		for (int edge : tree.edges) {
+			if (edge < 0 || edge >= graph.numberOfEdges || graph.reverse[edge] == -1)
+				return reject("edge " + edge + " is not a real edge of the graph");
+			int tail = graph.tail[edge];
+			int head = graph.head[edge];
+			if (stamp[tail] != current || stamp[head] != current)
+				return reject("edge " + edge + " leaves the vertices of the tree");
+			int a = find(tail);
+			int b = find(head);
+			if (a == b)
+				return reject("edge " + edge + " closes a cycle");
+			if (size[a] < size[b]) {
+				int swap = a;
+				a = b;
+				b = swap;
+			}
+			parent[b] = a;
+			size[a] += size[b];
+			weight += graph.weight[edge];
+		}
+		if (weight != tree.weight)
+			return reject("weight " + tree.weight + " recorded but " + weight + " recomputed");
+		error = null;
+		return weight;
+	}
+
+	boolean valid(KTree tree) {
+		return check(tree) >= 0;
+	}
+
+	private int find(int node) {
+		while (parent[node] != node) {
+			parent[node] = parent[parent[node]];
+			node = parent[node];
+		}
+		return node;
+	}
+
+	private long reject(String reason) {
+		error = reason;
+		return -1;
+	}
+
+}